@@ -0,0 +1,98 @@
+package ru.skillbox.task_tracker.benchmark;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.mapper.TaskMapperImpl;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.repository.UserRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Общие данные для бенчмарков: пользователи, задачи и мапперы без Spring-контекста
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Map<String, User> users(int count) {
+        Map<String, User> users = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            users.put("user-" + i, new User("user-" + i, "name-" + i, "user" + i + "@mail.ru"));
+        }
+        return users;
+    }
+
+    static Task task(int i, int observers, int userCount) {
+        Task task = new Task();
+        task.setId("task-" + i);
+        task.setName("task " + i);
+        task.setDescription("description of task " + i);
+        task.setStatus(TaskStatus.IN_PROGRESS);
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.now());
+        task.setVersion(1L);
+        task.setAuthorId("user-" + (i % userCount));
+        task.setAssigneeId("user-" + ((i + 1) % userCount));
+        Set<String> observerIds = new HashSet<>();
+        for (int j = 0; j < observers; j++) {
+            observerIds.add("user-" + ((i + 2 + j) % userCount));
+        }
+        task.setObserverIds(observerIds);
+        return task;
+    }
+
+    static List<Task> tasks(int count, int observers, int userCount) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(task(i, observers, userCount));
+        }
+        return tasks;
+    }
+
+    // Заполняет author, assignee и observers так же, как это делает TaskHydrator
+    static Task withUsers(Task task, Map<String, User> users) {
+        task.setAuthor(users.get(task.getAuthorId()));
+        task.setAssignee(users.get(task.getAssigneeId()));
+        Set<User> observers = new HashSet<>();
+        task.getObserverIds().forEach(id -> observers.add(users.get(id)));
+        task.setObservers(observers);
+        return task;
+    }
+
+    static TaskMapper taskMapper(UserMapperImpl userMapper) {
+        TaskMapperImpl taskMapper = new TaskMapperImpl();
+        // В приложении поле внедряет Spring
+        ReflectionTestUtils.setField(taskMapper, "userMapper", userMapper);
+        return taskMapper;
+    }
+
+    // Репозиторий пользователей в памяти: поддерживает только findById и findAllById
+    static UserRepository userRepository(Map<String, User> users) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> args[0] instanceof String id
+                            ? Mono.justOrEmpty(users.get(id))
+                            : Mono.from((org.reactivestreams.Publisher<?>) args[0]).mapNotNull(users::get);
+                    case "findAllById" -> args[0] instanceof Iterable<?> ids
+                            ? Flux.fromIterable(ids).mapNotNull(users::get)
+                            : Flux.from((org.reactivestreams.Publisher<?>) args[0]).mapNotNull(users::get);
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryUserRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,93 @@
+package ru.skillbox.task_tracker.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.config.UserCacheProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.repository.UserRepository;
+import ru.skillbox.task_tracker.service.impl.TaskHydrator;
+import ru.skillbox.task_tracker.service.impl.UserCache;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реактивная гидрация задач пользователями из репозитория в памяти: прежний путь
+ * через {@code Mono.zip} на каждую задачу против окон {@link TaskHydrator} с {@link UserCache}.
+ * Время операции - гидрация всех {@code tasks} задач.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HydrationBenchmark {
+
+    private static final int USERS = 1_000;
+
+    @Param({"100", "1000"})
+    private int tasks;
+
+    @Param({"2", "20"})
+    private int observers;
+
+    private List<Task> taskList;
+    private UserRepository userRepository;
+    private UserMapperImpl userMapper;
+    private TaskMapper taskMapper;
+    private TaskHydrator taskHydrator;
+
+    @Setup
+    public void setUp() {
+        Map<String, User> users = BenchmarkData.users(USERS);
+        taskList = BenchmarkData.tasks(tasks, observers, USERS);
+        userRepository = BenchmarkData.userRepository(users);
+        userMapper = new UserMapperImpl();
+        taskMapper = BenchmarkData.taskMapper(userMapper);
+    }
+
+    // Новый кэш на каждую итерацию, чтобы в замер попадали и промахи, а не только попадания
+    @Setup(Level.Iteration)
+    public void resetCache() {
+        UserCache userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
+        taskHydrator = new TaskHydrator(userCache, taskMapper, new TaskHydrationProperties());
+    }
+
+    @Benchmark
+    public List<TaskResponse> zipPerTask() {
+        return Flux.fromIterable(taskList)
+                .concatMap(task -> taskMapper.toDto(task,
+                        userRepository.findById(task.getAuthorId()),
+                        userRepository.findById(task.getAssigneeId()),
+                        userRepository.findAllById(task.getObserverIds()),
+                        userMapper))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<TaskResponse> windowedHydrator() {
+        return taskHydrator.hydrate(Flux.fromIterable(taskList))
+                .collectList()
+                .block();
+    }
+}
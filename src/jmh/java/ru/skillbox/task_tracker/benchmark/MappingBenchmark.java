@@ -0,0 +1,82 @@
+package ru.skillbox.task_tracker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.web.model.TaskRequest;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+import ru.skillbox.task_tracker.web.model.UserResponse;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость MapStruct-маппинга задач и пользователей
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    @Param({"0", "10", "100"})
+    private int observers;
+
+    private UserMapperImpl userMapper;
+    private TaskMapper taskMapper;
+    private Task task;
+    private Task hydratedTask;
+    private User user;
+    private TaskRequest request;
+
+    @Setup
+    public void setUp() {
+        Map<String, User> users = BenchmarkData.users(Math.max(observers + 2, 2));
+        userMapper = new UserMapperImpl();
+        taskMapper = BenchmarkData.taskMapper(userMapper);
+        task = BenchmarkData.task(0, observers, users.size());
+        hydratedTask = BenchmarkData.withUsers(BenchmarkData.task(0, observers, users.size()), users);
+        user = users.get("user-0");
+
+        request = new TaskRequest();
+        request.setName(task.getName());
+        request.setDescription(task.getDescription());
+        request.setStatus(task.getStatus());
+        request.setAuthorId(task.getAuthorId());
+        request.setAssigneeId(task.getAssigneeId());
+        request.setObserverIds(Set.copyOf(task.getObserverIds()));
+    }
+
+    @Benchmark
+    public TaskResponse taskToDto() {
+        return taskMapper.toDto(hydratedTask);
+    }
+
+    @Benchmark
+    public TaskResponse taskToDtoWithoutUsers() {
+        return taskMapper.toDtoWithoutUsers(task);
+    }
+
+    @Benchmark
+    public Task requestToEntity() {
+        return taskMapper.toEntity(request);
+    }
+
+    @Benchmark
+    public UserResponse userToDto() {
+        return userMapper.toDto(user);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.skillbox.task_tracker.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация TaskResponse в JSON в зависимости от числа наблюдателей
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    private int observers;
+
+    private ObjectMapper objectMapper;
+    private TaskResponse response;
+
+    @Setup
+    public void setUp() {
+        // Те же настройки Jackson, что и у WebFlux-кодеков приложения
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Map<String, User> users = BenchmarkData.users(Math.max(observers + 2, 2));
+        UserMapperImpl userMapper = new UserMapperImpl();
+        response = BenchmarkData.taskMapper(userMapper)
+                .toDto(BenchmarkData.withUsers(BenchmarkData.task(0, observers, users.size()), users));
+    }
+
+    @Benchmark
+    public byte[] writeTaskResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
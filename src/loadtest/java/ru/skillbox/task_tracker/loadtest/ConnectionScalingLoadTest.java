@@ -0,0 +1,254 @@
+package ru.skillbox.task_tracker.loadtest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Задержка и число потоков при {@code -Dloadtest.connections} (по умолчанию 5000) одновременных соединений:
+ * каждое соединение по кругу читает случайную задачу {@code GET /api/v1/tasks/{id}}, следующий запрос уходит
+ * после ответа на предыдущий. Соединения открываются равномерно за время прогрева. Клиент - {@link HttpClient}
+ * JDK с фиксированным числом потоков, поэтому прирост потоков JVM под нагрузкой - это потоки сервера.
+ * Сводка пишется в {@code target/loadtest/<время запуска>/connections.txt}.
+ * <p>
+ * Тест не зависит от стека HTTP и сравнивает Tomcat до перехода на WebFlux с Netty после него. Замер «до»:
+ * {@code git worktree add ../before 071b0a5^}, в её pom.xml добавить test-зависимости mongo-java-server и
+ * HdrHistogram, скопировать в её src/test/java этот класс и {@link LoadTestSettings} и запустить
+ * {@code mvn test -Dtest=ConnectionScalingLoadTest}; замер «после» - {@code mvn -Ploadtest test
+ * -Dtest=ConnectionScalingLoadTest}. Записанные результаты (1 CPU, mongo-java-server, 5000 соединений,
+ * прогрев 20 с, замер 30 с) - в {@code src/loadtest/resources/connections-tomcat-vs-netty.txt}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Slf4j
+class ConnectionScalingLoadTest {
+
+    private static final LoadTestSettings SETTINGS = LoadTestSettings.fromSystemProperties();
+    private static final int CONNECTIONS = Integer.getInteger("loadtest.connections", 5_000);
+    // Потоки клиента не растут с числом соединений
+    private static final int CLIENT_THREADS = Integer.getInteger("loadtest.client-threads", 4);
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+    private static final InetSocketAddress MONGO_ADDRESS = MONGO.bind();
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + MONGO_ADDRESS.getHostString() + ":" + MONGO_ADDRESS.getPort() + "/connections");
+        // Сервер в памяти не поддерживает explain
+        registry.add("app.mongo.indexes.explain-check", () -> "off");
+        // Все соединения прогона - один клиент, лимиты допуска исказили бы замеры
+        registry.add("app.admission.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        MONGO.shutdownNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private WebServerApplicationContext applicationContext;
+
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final LongAdder failures = new LongAdder();
+    private final Map<String, LongAdder> failureKinds = new TreeMap<>();
+    private final AtomicBoolean recording = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    @Test
+    void holdConcurrentConnections() throws Exception {
+        List<String> taskIds = seed();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(CLIENT_THREADS);
+        ScheduledExecutorService starter = Executors.newSingleThreadScheduledExecutor();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        // Прогревочный запрос: пул потоков клиента и селектор созданы до замера потоков
+        assertEquals(200, client.send(request(taskIds.get(0)), HttpResponse.BodyHandlers.discarding()).statusCode());
+        int idleThreads = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        CountDownLatch finished = new CountDownLatch(CONNECTIONS);
+        AtomicInteger opened = new AtomicInteger();
+        long rampNanos = SETTINGS.warmup().toNanos();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            Random random = new Random(SETTINGS.seed() + i);
+            starter.schedule(() -> {
+                opened.incrementAndGet();
+                next(client, taskIds, random, finished);
+            }, rampNanos * i / CONNECTIONS, TimeUnit.NANOSECONDS);
+        }
+        Thread.sleep(SETTINGS.warmup().toMillis());
+        latencies.reset();
+        failures.reset();
+        recording.set(true);
+        Thread.sleep(SETTINGS.duration().toMillis() / 2);
+        int loadThreads = threads.getThreadCount();
+        Map<String, Long> threadGroups = threadGroups();
+        Thread.sleep(SETTINGS.duration().toMillis() - SETTINGS.duration().toMillis() / 2);
+        recording.set(false);
+        int peakThreads = threads.getPeakThreadCount();
+        running.set(false);
+        finished.await(2, TimeUnit.MINUTES);
+        starter.shutdownNow();
+        clientExecutor.shutdownNow();
+
+        String server = applicationContext.getWebServer().getClass().getSimpleName();
+        double seconds = SETTINGS.duration().toMillis() / 1000.0;
+        List<String> lines = new ArrayList<>();
+        lines.add(server + " " + SETTINGS + " connections=" + CONNECTIONS + " clientThreads=" + CLIENT_THREADS
+                + " cpus=" + Runtime.getRuntime().availableProcessors());
+        lines.add(String.format("opened=%d requests=%d failures=%d throughput=%.1f req/s", opened.get(),
+                latencies.getTotalCount(), failures.sum(), latencies.getTotalCount() / seconds));
+        lines.add(String.format("latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+                latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(90) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0, latencies.getValueAtPercentile(99.9) / 1000.0,
+                latencies.getMaxValue() / 1000.0));
+        lines.add(String.format("jvm threads: idle=%d under load=%d peak=%d", idleThreads, loadThreads, peakThreads));
+        synchronized (failureKinds) {
+            failureKinds.forEach((kind, count) -> lines.add("failure " + kind + ": " + count.sum()));
+        }
+        lines.add("threads by name under load:");
+        threadGroups.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(15)
+                .forEach(group -> lines.add(String.format("  %5d %s", group.getValue(), group.getKey())));
+
+        Path dir = SETTINGS.reportDir().resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(dir);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve("connections.txt")))) {
+            lines.forEach(out::println);
+        }
+        lines.forEach(log::info);
+
+        assertEquals(CONNECTIONS, opened.get());
+        assertTrue(latencies.getTotalCount() > 0);
+    }
+
+    // Следующий запрос соединения уходит из обработчика ответа на предыдущий
+    private void next(HttpClient client, List<String> taskIds, Random random, CountDownLatch finished) {
+        if (!running.get()) {
+            finished.countDown();
+            return;
+        }
+        long started = System.nanoTime();
+        client.sendAsync(request(taskIds.get(random.nextInt(taskIds.size()))), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (recording.get()) {
+                        latencies.recordValue(Math.min(
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started), MAX_LATENCY_MICROS));
+                        if (error != null || response.statusCode() != 200) {
+                            failures.increment();
+                            String kind = error != null ? error.getClass().getSimpleName() : "HTTP " + response.statusCode();
+                            synchronized (failureKinds) {
+                                failureKinds.computeIfAbsent(kind, key -> new LongAdder()).increment();
+                            }
+                        }
+                    }
+                    next(client, taskIds, random, finished);
+                });
+    }
+
+    private HttpRequest request(String taskId) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/tasks/" + taskId))
+                .timeout(Duration.ofMinutes(1))
+                .GET()
+                .build();
+    }
+
+    // Документы пишутся напрямую, без сущностей: так же засевается и дерево до перехода на WebFlux
+    private List<String> seed() {
+        Random random = new Random(SETTINGS.seed());
+        List<Document> users = new ArrayList<>(SETTINGS.users());
+        for (int i = 0; i < SETTINGS.users(); i++) {
+            users.add(new Document("_id", "user-" + i)
+                    .append("name", "name-" + i)
+                    .append("email", "user" + i + "@mail.ru"));
+        }
+        mongoTemplate.insert(users, "users").blockLast();
+
+        Date now = new Date();
+        List<Document> tasks = new ArrayList<>(SETTINGS.tasks());
+        List<String> ids = new ArrayList<>(SETTINGS.tasks());
+        for (int i = 0; i < SETTINGS.tasks(); i++) {
+            tasks.add(new Document("_id", "task-" + i)
+                    .append("name", "task " + i)
+                    .append("description", "seeded task " + i)
+                    .append("status", TaskStatus.values()[random.nextInt(TaskStatus.values().length)].name())
+                    .append("createdAt", now)
+                    .append("updatedAt", now)
+                    .append("version", 0L)
+                    .append("authorId", "user-" + random.nextInt(SETTINGS.users()))
+                    .append("assigneeId", "user-" + random.nextInt(SETTINGS.users()))
+                    .append("observerIds", List.of("user-" + random.nextInt(SETTINGS.users()))));
+            ids.add("task-" + i);
+        }
+        Flux.fromIterable(tasks)
+                .buffer(1_000)
+                .concatMap(batch -> mongoTemplate.insert(batch, "tasks"))
+                .blockLast();
+        return ids;
+    }
+
+    // Живые потоки по имени без номеров: http-nio-N-exec-N, reactor-http-nio-N и т.д.
+    private static Map<String, Long> threadGroups() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .collect(Collectors.groupingBy(thread -> thread.getName().replaceAll("\\d+", "N"), Collectors.counting()));
+    }
+}
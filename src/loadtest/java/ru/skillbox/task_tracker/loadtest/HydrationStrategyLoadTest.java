@@ -0,0 +1,240 @@
+package ru.skillbox.task_tracker.loadtest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение стратегий гидрации {@code app.task-hydration.strategy} при разном числе наблюдателей у задачи:
+ * полная выгрузка {@code /tasks/export} и чтение задач по id. Стратегия переключается на работающем приложении,
+ * набор задач пересевается для каждого числа наблюдателей. Сводка пишется в
+ * {@code target/loadtest/<время запуска>/hydration.txt}.
+ * <p>
+ * mongo-java-server выполняет $lookup без индексов и в одном потоке, поэтому абсолютные значения
+ * отличаются от настоящей MongoDB; для решения о стратегии прогон стоит повторить на реальном кластере.
+ * Параметры: {@code -Dloadtest.users}, {@code -Dloadtest.tasks}, {@code -Dloadtest.concurrency},
+ * {@code -Dloadtest.fanouts=0,5,20,50}, {@code -Dloadtest.repetitions=5}, {@code -Dloadtest.reads=2000}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Slf4j
+class HydrationStrategyLoadTest {
+
+    private static final LoadTestSettings SETTINGS = LoadTestSettings.fromSystemProperties();
+    private static final int[] FANOUTS = Arrays.stream(System.getProperty("loadtest.fanouts", "0,5,20,50").split(","))
+            .mapToInt(fanout -> Integer.parseInt(fanout.trim()))
+            .toArray();
+    private static final int REPETITIONS = Integer.getInteger("loadtest.repetitions", 5);
+    private static final int READS = Integer.getInteger("loadtest.reads", 2_000);
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+    private static final InetSocketAddress MONGO_ADDRESS = MONGO.bind();
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + MONGO_ADDRESS.getHostString() + ":" + MONGO_ADDRESS.getPort() + "/hydration");
+        // Сервер в памяти не поддерживает explain
+        registry.add("app.mongo.indexes.explain-check", () -> "off");
+        registry.add("app.admission.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        MONGO.shutdownNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private TaskHydrationProperties hydrationProperties;
+
+    private WebClient webClient;
+
+    @Test
+    void compareStrategiesByObserverFanOut() throws IOException {
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port + "/api/v1")
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+        seedUsers();
+
+        List<String> lines = new ArrayList<>();
+        lines.add(SETTINGS + " fanouts=" + Arrays.toString(FANOUTS) + " repetitions=" + REPETITIONS + " reads=" + READS);
+        lines.add(String.format("%-8s %-12s %14s %14s %12s %12s %12s",
+                "fanout", "strategy", "export p50,ms", "export max,ms", "get p50,ms", "get p99,ms", "get req/s"));
+        for (int fanout : FANOUTS) {
+            List<String> taskIds = seedTasks(fanout);
+            assertSameResponses(taskIds.subList(0, Math.min(50, taskIds.size())));
+            for (TaskHydrationProperties.Strategy strategy : TaskHydrationProperties.Strategy.values()) {
+                hydrationProperties.setStrategy(strategy);
+                // Прогрев: JIT, UserCache и task_views для стратегии application
+                export();
+                reads(taskIds, new Random(SETTINGS.seed()));
+
+                Histogram exports = new Histogram(MAX_LATENCY_MICROS, 3);
+                for (int i = 0; i < REPETITIONS; i++) {
+                    long started = System.nanoTime();
+                    assertEquals(SETTINGS.tasks(), export());
+                    exports.recordValue(Math.min(micros(started), MAX_LATENCY_MICROS));
+                }
+
+                Histogram gets = new Histogram(MAX_LATENCY_MICROS, 3);
+                long started = System.nanoTime();
+                reads(taskIds, new Random(SETTINGS.seed() + 1))
+                        .forEach(latency -> gets.recordValue(Math.min(latency, MAX_LATENCY_MICROS)));
+                double seconds = micros(started) / 1_000_000.0;
+
+                lines.add(String.format("%-8d %-12s %14.2f %14.2f %12.2f %12.2f %12.1f",
+                        fanout, strategy.name().toLowerCase(),
+                        exports.getValueAtPercentile(50) / 1000.0, exports.getMaxValue() / 1000.0,
+                        gets.getValueAtPercentile(50) / 1000.0, gets.getValueAtPercentile(99) / 1000.0,
+                        READS / seconds));
+            }
+        }
+        hydrationProperties.setStrategy(TaskHydrationProperties.Strategy.APPLICATION);
+
+        Path dir = SETTINGS.reportDir().resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(dir);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve("hydration.txt")))) {
+            lines.forEach(out::println);
+        }
+        lines.forEach(log::info);
+    }
+
+    private void seedUsers() {
+        List<User> users = new ArrayList<>(SETTINGS.users());
+        for (int i = 0; i < SETTINGS.users(); i++) {
+            users.add(new User("user-" + i, "name-" + i, "user" + i + "@mail.ru"));
+        }
+        mongoTemplate.insertAll(users).blockLast();
+    }
+
+    // Тот же набор задач с заданным числом наблюдателей; проекции task_views прошлого набора удаляются
+    private List<String> seedTasks(int fanout) {
+        mongoTemplate.remove(new Query(), Task.class).block();
+        mongoTemplate.remove(new Query(), "task_views").block();
+        Random random = new Random(SETTINGS.seed());
+        Instant now = Instant.now();
+        List<Task> tasks = new ArrayList<>(SETTINGS.tasks());
+        List<String> ids = new ArrayList<>(SETTINGS.tasks());
+        for (int i = 0; i < SETTINGS.tasks(); i++) {
+            Task task = new Task();
+            task.setId("task-" + i);
+            task.setName("task " + i);
+            task.setDescription("seeded task " + i);
+            task.setStatus(TaskStatus.values()[random.nextInt(TaskStatus.values().length)]);
+            task.setCreatedAt(now.minusSeconds(i));
+            task.setUpdatedAt(now.minusSeconds(i));
+            task.setVersion(0L);
+            task.setAuthorId(randomUser(random));
+            task.setAssigneeId(randomUser(random));
+            Set<String> observers = new HashSet<>();
+            while (observers.size() < Math.min(fanout, SETTINGS.users())) {
+                observers.add(randomUser(random));
+            }
+            task.setObserverIds(observers);
+            tasks.add(task);
+            ids.add(task.getId());
+        }
+        Flux.fromIterable(tasks)
+                .buffer(1_000)
+                .concatMap(mongoTemplate::insertAll)
+                .blockLast();
+        return ids;
+    }
+
+    // Обе стратегии отдают одинаковые задачи с одинаковыми пользователями
+    private void assertSameResponses(List<String> taskIds) {
+        hydrationProperties.setStrategy(TaskHydrationProperties.Strategy.APPLICATION);
+        List<TaskResponse> application = get(taskIds);
+        hydrationProperties.setStrategy(TaskHydrationProperties.Strategy.LOOKUP);
+        assertEquals(application, get(taskIds));
+    }
+
+    private List<TaskResponse> get(List<String> taskIds) {
+        return Flux.fromIterable(taskIds)
+                .concatMap(id -> webClient.get().uri("/tasks/{id}", id)
+                        .retrieve()
+                        .bodyToMono(TaskResponse.class))
+                .collectList()
+                .block();
+    }
+
+    private long export() {
+        Long count = webClient.get().uri("/tasks/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(TaskResponse.class)
+                .count()
+                .block();
+        return count != null ? count : 0;
+    }
+
+    // Задержки чтений по id в микросекундах, SETTINGS.concurrency() запросов одновременно
+    private List<Long> reads(List<String> taskIds, Random random) {
+        List<String> sample = new ArrayList<>(READS);
+        for (int i = 0; i < READS; i++) {
+            sample.add(taskIds.get(random.nextInt(taskIds.size())));
+        }
+        return Flux.fromIterable(sample)
+                .flatMap(id -> {
+                    long started = System.nanoTime();
+                    return webClient.get().uri("/tasks/{id}", id)
+                            .retrieve()
+                            .bodyToMono(TaskResponse.class)
+                            .map(task -> micros(started));
+                }, SETTINGS.concurrency())
+                .collectList()
+                .block();
+    }
+
+    private String randomUser(Random random) {
+        return "user-" + random.nextInt(SETTINGS.users());
+    }
+
+    private static long micros(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedNanos);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.skillbox.task_tracker.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Параметры нагрузочного прогона, задаются системными свойствами {@code -Dloadtest.*}.
+ * Один и тот же {@code seed} даёт один и тот же набор данных и ту же последовательность операций на каждом воркере.
+ */
+record LoadTestSettings(int users,
+                        int tasks,
+                        int observersPerTask,
+                        int concurrency,
+                        double writeRatio,
+                        Duration warmup,
+                        Duration duration,
+                        long seed,
+                        Path reportDir) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.users", 1_000),
+                Integer.getInteger("loadtest.tasks", 20_000),
+                Integer.getInteger("loadtest.observers", 5),
+                Integer.getInteger("loadtest.concurrency", 32),
+                Double.parseDouble(System.getProperty("loadtest.write-ratio", "0.2")),
+                Duration.parse(System.getProperty("loadtest.warmup", "PT5S")),
+                Duration.parse(System.getProperty("loadtest.duration", "PT30S")),
+                Long.getLong("loadtest.seed", 42L),
+                Path.of(System.getProperty("loadtest.report-dir", "target/loadtest")));
+    }
+}
@@ -0,0 +1,310 @@
+package ru.skillbox.task_tracker.loadtest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.web.model.TaskRequest;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сквозной нагрузочный прогон: приложение на Netty поверх in-process сервера Mongo (mongo-java-server),
+ * набор данных засевается напрямую в базу, затем воркеры гоняют смешанную нагрузку через HTTP API.
+ * Гистограммы задержек (HdrHistogram, мс) и сводка пишутся в {@code target/loadtest/<время запуска>}.
+ * Работает без сети и без установленной MongoDB.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Slf4j
+class TaskTrackerLoadTest {
+
+    private static final LoadTestSettings SETTINGS = LoadTestSettings.fromSystemProperties();
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+    private static final InetSocketAddress MONGO_ADDRESS = MONGO.bind();
+
+    // Максимальная фиксируемая задержка - минута, точность - 3 значащие цифры
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + MONGO_ADDRESS.getHostString() + ":" + MONGO_ADDRESS.getPort() + "/loadtest");
+        // Сервер в памяти не поддерживает explain
+        registry.add("app.mongo.indexes.explain-check", () -> "off");
+        // Все воркеры прогона — один клиент, лимиты допуска исказили бы замеры
+        registry.add("app.admission.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        MONGO.shutdownNow();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder serverErrors = new LongAdder();
+
+    private final List<String> userIds = new ArrayList<>();
+    private final List<String> taskIds = new CopyOnWriteArrayList<>();
+
+    private WebClient webClient;
+
+    @Test
+    void mixedReadWriteWorkload() throws IOException {
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port + "/api/v1")
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+
+        long seedStarted = System.nanoTime();
+        seed();
+        log.info("Seeded {} users and {} tasks in {} ms", SETTINGS.users(), SETTINGS.tasks(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStarted));
+
+        run(SETTINGS.warmup(), false);
+        histograms.clear();
+        errors.clear();
+        serverErrors.reset();
+        long total = run(SETTINGS.duration(), true);
+
+        Path reportDir = writeReport(total);
+        log.info("Load test report written to {}", reportDir.toAbsolutePath());
+
+        assertTrue(total > 0);
+        assertEquals(0, serverErrors.sum(), "5xx responses during the run");
+    }
+
+    private void seed() {
+        Random random = new Random(SETTINGS.seed());
+        List<User> users = new ArrayList<>(SETTINGS.users());
+        for (int i = 0; i < SETTINGS.users(); i++) {
+            users.add(new User("user-" + i, "name-" + i, "user" + i + "@mail.ru"));
+            userIds.add("user-" + i);
+        }
+        mongoTemplate.insertAll(users).blockLast();
+
+        Instant now = Instant.now();
+        List<Task> tasks = new ArrayList<>(SETTINGS.tasks());
+        for (int i = 0; i < SETTINGS.tasks(); i++) {
+            Task task = new Task();
+            task.setId("task-" + i);
+            task.setName("task " + i);
+            task.setDescription("seeded task " + i);
+            task.setStatus(TaskStatus.values()[random.nextInt(TaskStatus.values().length)]);
+            task.setCreatedAt(now.minusSeconds(i));
+            task.setUpdatedAt(now.minusSeconds(i));
+            task.setVersion(0L);
+            task.setAuthorId(randomUser(random));
+            task.setAssigneeId(randomUser(random));
+            task.setObserverIds(randomObservers(random));
+            tasks.add(task);
+            taskIds.add(task.getId());
+        }
+        Flux.fromIterable(tasks)
+                .buffer(1_000)
+                .concatMap(mongoTemplate::insertAll)
+                .blockLast();
+    }
+
+    // Закрытая модель нагрузки: каждый воркер отправляет следующий запрос после ответа на предыдущий
+    private long run(Duration duration, boolean record) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        LongAdder completed = new LongAdder();
+        Flux.range(0, SETTINGS.concurrency())
+                .flatMap(worker -> {
+                    Random random = new Random(SETTINGS.seed() + worker);
+                    return Mono.defer(() -> nextOperation(random))
+                            .doOnSuccess(ignored -> completed.increment())
+                            .repeat(() -> System.nanoTime() < deadline);
+                }, SETTINGS.concurrency())
+                .blockLast();
+        log.info("{} finished: {} requests", record ? "Measurement" : "Warmup", completed.sum());
+        return completed.sum();
+    }
+
+    private Mono<Void> nextOperation(Random random) {
+        if (random.nextDouble() < SETTINGS.writeRatio()) {
+            int op = random.nextInt(4);
+            return switch (op) {
+                case 0 -> timed("createTask", () -> webClient.post().uri("/tasks")
+                        .bodyValue(randomRequest(random))
+                        .retrieve()
+                        .bodyToMono(TaskResponse.class)
+                        .doOnNext(task -> taskIds.add(task.getId())));
+                case 1 -> {
+                    TaskRequest patch = new TaskRequest();
+                    patch.setStatus(TaskStatus.values()[random.nextInt(TaskStatus.values().length)]);
+                    patch.setDescription("patched " + random.nextInt());
+                    yield timed("patchTask", () -> webClient.patch().uri("/tasks/{id}", randomTask(random))
+                            .bodyValue(patch)
+                            .retrieve()
+                            .bodyToMono(TaskResponse.class));
+                }
+                case 2 -> timed("addObserver", () -> webClient.patch()
+                        .uri("/tasks/observers/{id}?observerId={observerId}", randomTask(random), randomUser(random))
+                        .retrieve()
+                        .bodyToMono(TaskResponse.class));
+                default -> timed("removeObserver", () -> webClient.delete()
+                        .uri("/tasks/observers/{id}?observerId={observerId}", randomTask(random), randomUser(random))
+                        .retrieve()
+                        .bodyToMono(TaskResponse.class));
+            };
+        }
+        int op = random.nextInt(10);
+        if (op < 5) {
+            return timed("getTask", () -> webClient.get().uri("/tasks/{id}", randomTask(random))
+                    .retrieve()
+                    .bodyToMono(TaskResponse.class));
+        }
+        if (op < 8) {
+            return timed("listTasksByAssignee", () -> webClient.get()
+                    .uri("/tasks?assigneeId={assigneeId}&limit=50", randomUser(random))
+                    .retrieve()
+                    .bodyToMono(String.class));
+        }
+        return timed("getUser", () -> webClient.get().uri("/users/{id}", randomUser(random))
+                .retrieve()
+                .bodyToMono(String.class));
+    }
+
+    private Mono<Void> timed(String operation, Supplier<Mono<?>> request) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return request.get()
+                    .doOnTerminate(() -> histograms.computeIfAbsent(operation, this::newHistogram)
+                            .recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started),
+                                    MAX_LATENCY_MICROS)))
+                    .onErrorResume(error -> {
+                        errors.computeIfAbsent(operation, key -> new LongAdder()).increment();
+                        if (error instanceof WebClientResponseException response
+                                && response.getStatusCode().is5xxServerError()) {
+                            serverErrors.increment();
+                        }
+                        return Mono.empty();
+                    })
+                    .then();
+        });
+    }
+
+    private Histogram newHistogram(String operation) {
+        return new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    }
+
+    private Path writeReport(long total) throws IOException {
+        Path dir = SETTINGS.reportDir().resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(dir);
+
+        Histogram all = new Histogram(MAX_LATENCY_MICROS, 3);
+        Map<String, Histogram> report = new LinkedHashMap<>(new TreeMap<>(histograms));
+        for (Map.Entry<String, Histogram> entry : report.entrySet()) {
+            all.add(entry.getValue());
+            writeHistogram(dir.resolve(entry.getKey() + ".hgrm"), entry.getValue());
+        }
+        writeHistogram(dir.resolve("all.hgrm"), all);
+
+        double seconds = SETTINGS.duration().toMillis() / 1000.0;
+        try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve("summary.txt")))) {
+            out.println(SETTINGS);
+            out.printf("total=%d throughput=%.1f req/s errors=%d serverErrors=%d%n",
+                    total, total / seconds, errors.values().stream().mapToLong(LongAdder::sum).sum(), serverErrors.sum());
+            out.printf("%-22s %10s %10s %10s %10s %10s %10s %8s%n",
+                    "operation", "count", "req/s", "p50,ms", "p99,ms", "p99.9,ms", "max,ms", "errors");
+            report.put("all", all);
+            report.forEach((operation, histogram) -> out.printf("%-22s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    operation,
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / seconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    operation.equals("all")
+                            ? errors.values().stream().mapToLong(LongAdder::sum).sum()
+                            : errors.getOrDefault(operation, new LongAdder()).sum()));
+        }
+        Files.readAllLines(dir.resolve("summary.txt")).forEach(log::info);
+        return dir;
+    }
+
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            // Значения записаны в микросекундах, в файл выводятся миллисекунды
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private TaskRequest randomRequest(Random random) {
+        TaskRequest request = new TaskRequest();
+        request.setName("load " + random.nextInt());
+        request.setDescription("created by load test");
+        request.setStatus(TaskStatus.TODO);
+        request.setAuthorId(randomUser(random));
+        request.setAssigneeId(randomUser(random));
+        request.setObserverIds(randomObservers(random));
+        return request;
+    }
+
+    private Set<String> randomObservers(Random random) {
+        Set<String> observers = new HashSet<>();
+        for (int j = 0; j < SETTINGS.observersPerTask(); j++) {
+            observers.add(randomUser(random));
+        }
+        return observers;
+    }
+
+    private String randomUser(Random random) {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    private String randomTask(Random random) {
+        return taskIds.get(random.nextInt(taskIds.size()));
+    }
+}
@@ -0,0 +1,95 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Допуск запросов к /api: token bucket на клиента и на пару клиент-эндпоинт, лимит одновременных
+ * запросов для дорогих эндпоинтов и вероятностный сброс при росте задержки команд Mongo.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    // Заголовок с идентификатором клиента; без него клиент определяется по адресу
+    private String clientHeader = "X-Client-Id";
+
+    // Верить заголовку клиента от любого адреса. Включать, только если заголовок выставляет шлюз перед приложением
+    private boolean trustClientHeader = false;
+
+    // Адреса прокси, от которых заголовку клиента верим и без trustClientHeader
+    private List<String> trustedProxies = new ArrayList<>();
+
+    // Сколько клиентов помнится одновременно и через сколько простоя их корзины забываются
+    private long maxClients = 100_000;
+
+    private Duration clientIdleTimeout = Duration.ofMinutes(10);
+
+    // Общая корзина клиента на все эндпоинты
+    private Bucket client = new Bucket(100, 200);
+
+    // Эндпоинты проверяются по порядку, срабатывает первый подходящий
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    private Shedding shedding = new Shedding();
+
+    @Data
+    public static class Bucket {
+
+        // Запросов в секунду, 0 — без ограничения
+        private double rate;
+
+        private int burst;
+
+        public Bucket() {
+        }
+
+        public Bucket(double rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+    }
+
+    @Data
+    public static class Endpoint {
+
+        private String method = "GET";
+
+        private String path;
+
+        // Корзина каждого клиента на этом эндпоинте
+        private double rate;
+
+        private int burst;
+
+        // Одновременных запросов от всех клиентов, 0 — без ограничения
+        private int maxConcurrency;
+
+        // Сбрасывается ли эндпоинт при росте задержки Mongo
+        private boolean sheddable = true;
+    }
+
+    @Data
+    public static class Shedding {
+
+        private boolean enabled = true;
+
+        // Ниже target запросы не сбрасываются, к max доля сброса линейно растёт до единицы
+        private Duration targetLatency = Duration.ofMillis(50);
+
+        private Duration maxLatency = Duration.ofMillis(250);
+
+        // Постоянная времени скользящего среднего задержки команд
+        private Duration window = Duration.ofSeconds(2);
+
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+}
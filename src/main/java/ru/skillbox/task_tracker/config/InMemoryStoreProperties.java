@@ -0,0 +1,29 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+// Хранилище профиля inmemory: данные в памяти, на диске снимок и журнал изменений
+@Data
+@ConfigurationProperties(prefix = "app.inmemory")
+public class InMemoryStoreProperties {
+
+    // Писать ли снимок и журнал на диск; без этого данные живут до остановки приложения
+    private boolean persistent = true;
+
+    // Каталог для snapshot.dat и wal.log
+    private Path dataDir = Path.of("data");
+
+    // Размер журнала; когда он заполняется, пишется новый снимок и журнал начинается заново
+    private DataSize walSize = DataSize.ofMegabytes(64);
+
+    // Сбрасывать ли каждую запись журнала на диск. Без этого запись переживает падение процесса,
+    // но не отключение питания
+    private boolean forceOnWrite = false;
+
+    // Число полос блокировок во вторичных индексах
+    private int indexStripes = 64;
+}
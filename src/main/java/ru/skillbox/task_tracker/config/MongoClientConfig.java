@@ -0,0 +1,42 @@
+package ru.skillbox.task_tracker.config;
+
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.skillbox.task_tracker.metrics.MongoPoolMetricsListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoClientConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoClientTuning(MongoClientProperties properties,
+                                                                  MongoPoolMetricsListener poolMetricsListener) {
+        MongoClientProperties.Pool pool = properties.getPool();
+        MongoClientProperties.Socket socket = properties.getSocket();
+        // Незаданные настройки не трогаем, чтобы не перекрыть ими параметры из URI
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        return builder -> builder
+                .applyToConnectionPoolSettings(settings -> {
+                    map.from(pool::getMaxSize).to(settings::maxSize);
+                    map.from(pool::getMinSize).to(settings::minSize);
+                    map.from(pool::getMaxWaitTime).as(Duration::toMillis)
+                            .to(millis -> settings.maxWaitTime(millis, TimeUnit.MILLISECONDS));
+                    map.from(pool::getMaxConnecting).to(settings::maxConnecting);
+                    map.from(pool::getMaxConnectionIdleTime).as(Duration::toMillis)
+                            .to(millis -> settings.maxConnectionIdleTime(millis, TimeUnit.MILLISECONDS));
+                    map.from(pool::getMaxConnectionLifeTime).as(Duration::toMillis)
+                            .to(millis -> settings.maxConnectionLifeTime(millis, TimeUnit.MILLISECONDS));
+                    settings.addConnectionPoolListener(poolMetricsListener);
+                })
+                .applyToSocketSettings(settings -> {
+                    map.from(socket::getConnectTimeout).as(Duration::toMillis)
+                            .to(millis -> settings.connectTimeout(millis, TimeUnit.MILLISECONDS));
+                    map.from(socket::getReadTimeout).as(Duration::toMillis)
+                            .to(millis -> settings.readTimeout(millis, TimeUnit.MILLISECONDS));
+                });
+    }
+}
@@ -0,0 +1,49 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Пул соединений и таймауты драйвера Mongo. Применяются только заданные настройки: они перекрывают
+ * одноимённые параметры из {@code spring.data.mongodb.uri}, остальное берётся из URI или умолчаний драйвера.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mongo.client")
+public class MongoClientProperties {
+
+    private Pool pool = new Pool();
+
+    private Socket socket = new Socket();
+
+    @Data
+    public static class Pool {
+
+        // Соединений на один сервер кластера, у драйвера 100
+        private Integer maxSize;
+
+        private Integer minSize;
+
+        // Сколько запрос ждёт свободного соединения, после этого получает ошибку таймаута; у драйвера 2 минуты
+        private Duration maxWaitTime;
+
+        // Одновременно устанавливаемых соединений, остальные ждут в очереди пула; у драйвера 2
+        private Integer maxConnecting;
+
+        // 0 — без ограничения
+        private Duration maxConnectionIdleTime;
+
+        private Duration maxConnectionLifeTime;
+    }
+
+    @Data
+    public static class Socket {
+
+        // У драйвера 10 секунд
+        private Duration connectTimeout;
+
+        // 0 — без ограничения; должен быть больше maxAwaitTime change stream ленты задач
+        private Duration readTimeout;
+    }
+}
@@ -0,0 +1,190 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskView;
+import ru.skillbox.task_tracker.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Создаёт индексы для запросов репозиториев при старте и проверяет через {@code explain()},
+ * что ни один из этих запросов не выполняется сканированием всей коллекции.
+ * Создание индексов идемпотентно: существующий индекс с тем же ключом и именем не пересоздаётся.
+ */
+@Component
+@Profile("!inmemory")
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer implements ApplicationRunner {
+
+    private static final List<IndexSpec> INDEXES = List.of(
+            new IndexSpec(Task.class, new Index()
+                    .on("authorId", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                    .named("authorId_updatedAt_id")),
+            new IndexSpec(Task.class, new Index()
+                    .on("assigneeId", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                    .named("assigneeId_updatedAt_id")),
+            // observerIds - массив, поэтому индекс multikey
+            new IndexSpec(Task.class, new Index()
+                    .on("observerIds", Sort.Direction.ASC)
+                    .named("observerIds")),
+            new IndexSpec(Task.class, new Index()
+                    .on("status", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                    .named("status_updatedAt_id")),
+            new IndexSpec(Task.class, new Index()
+                    .on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                    .named("updatedAt_id")),
+            // Полнотекстовый поиск: совпадение в названии весит больше, чем в описании.
+            // Язык none - без стемминга и стоп-слов, тексты задач бывают и на русском, и на английском
+            new IndexSpec(Task.class, new TextIndexDefinition.TextIndexDefinitionBuilder()
+                    .onField("name", 10F)
+                    .onField("description", 2F)
+                    .withDefaultLanguage("none")
+                    .named("task_text")
+                    .build()),
+            new IndexSpec(User.class, new Index()
+                    .on("name", Sort.Direction.ASC)
+                    .named("name")),
+            new IndexSpec(TaskView.class, new Index()
+                    .on("authorId", Sort.Direction.ASC)
+                    .named("authorId")),
+            new IndexSpec(TaskView.class, new Index()
+                    .on("assigneeId", Sort.Direction.ASC)
+                    .named("assigneeId")),
+            new IndexSpec(TaskView.class, new Index()
+                    .on("observers._id", Sort.Direction.ASC)
+                    .named("observers_id"))
+    );
+
+    private static final List<QueryShape> QUERIES = List.of(
+            new QueryShape("TaskRepository.findAllByAuthorId", "tasks",
+                    new Document("authorId", "?"), new Document()),
+            new QueryShape("TaskRepository.findAllByAssigneeId", "tasks",
+                    new Document("assigneeId", "?"), new Document()),
+            new QueryShape("TaskRepository.findByAssigneeId", "tasks",
+                    new Document("assigneeId", "?"), new Document()),
+            new QueryShape("TaskRepository.findAllByObserverIdsContaining", "tasks",
+                    new Document("observerIds", "?"), new Document()),
+            new QueryShape("TaskRepository.findPage", "tasks",
+                    new Document(), new Document("updatedAt", -1).append("_id", -1)),
+            new QueryShape("TaskRepository.findPage(status)", "tasks",
+                    new Document("status", "TODO"), new Document("updatedAt", -1).append("_id", -1)),
+            new QueryShape("TaskRepository.findPage(assigneeId)", "tasks",
+                    new Document("assigneeId", "?"), new Document("updatedAt", -1).append("_id", -1)),
+            new QueryShape("TaskRepository.findPage(authorId)", "tasks",
+                    new Document("authorId", "?"), new Document("updatedAt", -1).append("_id", -1)),
+            new QueryShape("TaskRepository.search", "tasks",
+                    new Document("$text", new Document("$search", "?")), new Document("score", new Document("$meta", "textScore"))),
+            new QueryShape("UserRepository.findByName", "users",
+                    new Document("name", "?"), new Document()),
+            new QueryShape("TaskViewRepository.updateUser(author)", "task_views",
+                    new Document("authorId", "?"), new Document()),
+            new QueryShape("TaskViewRepository.updateUser(assignee)", "task_views",
+                    new Document("assigneeId", "?"), new Document()),
+            new QueryShape("TaskViewRepository.updateUser(observers)", "task_views",
+                    new Document("observers._id", "?"), new Document())
+    );
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MongoIndexProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Mono<Void> provisioning = ensureIndexes().then(checkQueryPlans());
+        if (properties.getExplainCheck() == MongoIndexProperties.ExplainCheck.FAIL) {
+            // Старт приложения прерывается, если какой-то запрос не покрыт индексом
+            provisioning.block();
+        } else {
+            provisioning.subscribe(null, error -> log.error("Mongo index provisioning failed", error));
+        }
+    }
+
+    private Mono<Void> ensureIndexes() {
+        return Flux.fromIterable(INDEXES)
+                .concatMap(spec -> mongoTemplate.indexOps(spec.entity()).ensureIndex(spec.index())
+                        .doOnNext(name -> log.info("Ensured index {} on {}", name,
+                                mongoTemplate.getCollectionName(spec.entity()))))
+                .then();
+    }
+
+    private Mono<Void> checkQueryPlans() {
+        if (properties.getExplainCheck() == MongoIndexProperties.ExplainCheck.OFF) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(QUERIES)
+                .concatMap(query -> explain(query)
+                        .map(plan -> {
+                            List<String> indexes = new ArrayList<>();
+                            boolean collectionScan = inspectPlan(plan, indexes);
+                            if (collectionScan) {
+                                log.warn("Query {} on {} falls back to COLLSCAN", query.name(), query.collection());
+                            } else {
+                                log.info("Query {} on {} is covered by index {}", query.name(), query.collection(), indexes);
+                            }
+                            return collectionScan ? query.name() : "";
+                        }))
+                .filter(name -> !name.isEmpty())
+                .collectList()
+                .flatMap(uncovered -> uncovered.isEmpty() || properties.getExplainCheck() != MongoIndexProperties.ExplainCheck.FAIL
+                        ? Mono.empty()
+                        : Mono.error(new IllegalStateException("Queries without index: " + uncovered)));
+    }
+
+    private Mono<Document> explain(QueryShape query) {
+        return mongoTemplate.getCollection(query.collection())
+                .flatMap(collection -> Mono.from(collection.find(query.filter())
+                        .sort(query.sort())
+                        .explain(Document.class)))
+                .map(explain -> explain.get("queryPlanner", Document.class).get("winningPlan", Document.class));
+    }
+
+    // Обходит дерево плана; возвращает true, если в нём есть COLLSCAN, и собирает имена индексов
+    private boolean inspectPlan(Document stage, List<String> indexes) {
+        boolean collectionScan = "COLLSCAN".equals(stage.getString("stage"));
+        if (stage.containsKey("indexName")) {
+            indexes.add(stage.getString("indexName"));
+        }
+        Object inputStage = stage.get("inputStage");
+        if (inputStage instanceof Document child) {
+            collectionScan |= inspectPlan(child, indexes);
+        }
+        Object inputStages = stage.get("inputStages");
+        if (inputStages instanceof List<?> children) {
+            for (Object child : children) {
+                if (child instanceof Document document) {
+                    collectionScan |= inspectPlan(document, indexes);
+                }
+            }
+        }
+        // В новых версиях MongoDB (SBE) план лежит внутри queryPlan
+        Object queryPlan = stage.get("queryPlan");
+        if (queryPlan instanceof Document document) {
+            collectionScan |= inspectPlan(document, indexes);
+        }
+        return collectionScan;
+    }
+
+    private record IndexSpec(Class<?> entity, IndexDefinition index) {
+    }
+
+    private record QueryShape(String name, String collection, Document filter, Document sort) {
+    }
+}
@@ -0,0 +1,19 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.mongo.indexes")
+public class MongoIndexProperties {
+
+    // Создавать индексы при старте приложения
+    private boolean enabled = true;
+
+    // Что делать, если запрос репозитория выполняется полным сканированием коллекции
+    private ExplainCheck explainCheck = ExplainCheck.WARN;
+
+    public enum ExplainCheck {
+        OFF, WARN, FAIL
+    }
+}
@@ -0,0 +1,26 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.task-archive")
+public class TaskArchiveProperties {
+
+    // Переносить ли выполненные задачи в архив
+    private boolean enabled = true;
+
+    // Выполненная задача уходит в архив, если она не менялась дольше этого срока
+    private Duration age = Duration.ofDays(90);
+
+    // Пауза между запусками архивации
+    private Duration interval = Duration.ofHours(1);
+
+    // Задержка первого запуска после старта приложения
+    private Duration initialDelay = Duration.ofMinutes(1);
+
+    // Сколько задач переносится за одну пачку
+    private int batchSize = 1000;
+}
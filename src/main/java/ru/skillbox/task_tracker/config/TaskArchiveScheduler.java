@@ -0,0 +1,53 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+
+// Периодически запускает архивацию выполненных задач; следующий запуск не начинается, пока идёт предыдущий
+@Component
+@Profile("!inmemory")
+@RequiredArgsConstructor
+@Slf4j
+public class TaskArchiveScheduler implements ApplicationRunner, DisposableBean {
+
+    private final TaskArchiveService taskArchiveService;
+    private final TaskArchiveProperties properties;
+
+    private Disposable schedule;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        schedule = Flux.interval(properties.getInitialDelay(), properties.getInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> taskArchiveService.archive()
+                        .doOnNext(archived -> {
+                            if (archived > 0) {
+                                log.info("Archived {} done tasks", archived);
+                            }
+                        })
+                        .onErrorResume(error -> {
+                            log.error("Task archiving failed", error);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+}
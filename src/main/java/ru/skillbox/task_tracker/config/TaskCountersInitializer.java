@@ -0,0 +1,35 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.repository.TaskCountersRepository;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+
+// Заполняет task_counters агрегацией при первом запуске, когда задачи уже есть, а счётчиков ещё нет
+@Component
+@Profile("!inmemory")
+@RequiredArgsConstructor
+@Slf4j
+public class TaskCountersInitializer implements ApplicationRunner {
+
+    private final TaskCountersRepository taskCountersRepository;
+    private final TaskRepository taskRepository;
+    private final TaskCounterService taskCounterService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Mono.zip(taskCountersRepository.count(), taskRepository.count())
+                .filter(counts -> counts.getT1() == 0 && counts.getT2() > 0)
+                .flatMap(counts -> {
+                    log.info("Building task counters for {} tasks", counts.getT2());
+                    return taskCounterService.rebuildAll();
+                })
+                .subscribe(null, error -> log.error("Task counters initialization failed", error));
+    }
+}
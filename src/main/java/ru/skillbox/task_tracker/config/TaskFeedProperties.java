@@ -0,0 +1,29 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.task-feed")
+public class TaskFeedProperties {
+
+    // Сколько событий ждёт медленного подписчика, сверх этого старые события отбрасываются
+    private int bufferSize = 256;
+
+    // Сколько последних событий хранится в памяти для переподключившихся клиентов
+    private int historySize = 1_000;
+
+    // Сколько переподключившихся клиентов одновременно догоняют общий поток своим change stream;
+    // остальные получают RESET
+    private int maxCatchUpStreams = 16;
+
+    // Интервал комментариев-пингов SSE, чтобы прокси не закрывали простаивающее соединение
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+    // Пауза перед переоткрытием общего change stream после ошибки, растёт до maxBackoff
+    private Duration minBackoff = Duration.ofSeconds(1);
+
+    private Duration maxBackoff = Duration.ofSeconds(30);
+}
@@ -0,0 +1,25 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.task-hydration")
+public class TaskHydrationProperties {
+
+    // Где к задачам присоединяются пользователи при чтении задачи по id и полной выгрузке
+    private Strategy strategy = Strategy.APPLICATION;
+
+    // Сколько задач гидрируется одним запросом $in к users
+    private int windowSize = 500;
+
+    // Сколько окон гидрируется одновременно; порядок задач сохраняется при любом значении
+    private int concurrency = 1;
+
+    public enum Strategy {
+        // Окнами задач с запросом $in к users через UserCache
+        APPLICATION,
+        // Одной агрегацией с $lookup на стороне Mongo
+        LOOKUP
+    }
+}
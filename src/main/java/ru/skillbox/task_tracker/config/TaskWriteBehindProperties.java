@@ -0,0 +1,33 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.task-write-behind")
+public class TaskWriteBehindProperties {
+
+    // Подтверждать ли создание и изменение задач сразу после записи в локальную очередь, до записи в Mongo
+    private boolean enabled = false;
+
+    // Сколько задач может ждать записи; сверх этого новые изменения отклоняются с 503
+    private int capacity = 10_000;
+
+    // Сколько задач уходит в Mongo одним bulkWrite; очередь такого размера сбрасывается, не дожидаясь интервала
+    private int batchSize = 500;
+
+    // Как часто очередь сбрасывается в Mongo
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    // Журнал очереди, по нему неподтверждённые Mongo изменения восстанавливаются после перезапуска
+    private Path journal = Path.of("data", "task-write-behind.log");
+
+    private DataSize journalSize = DataSize.ofMegabytes(64);
+
+    // Сбрасывать ли каждую запись журнала на диск
+    private boolean forceOnWrite = false;
+}
@@ -0,0 +1,17 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.user-cache")
+public class UserCacheProperties {
+
+    // Максимальное число пользователей в кэше, сверх него работает вытеснение W-TinyLFU
+    private long maximumSize = 10_000;
+
+    // Время жизни записи после загрузки
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+}
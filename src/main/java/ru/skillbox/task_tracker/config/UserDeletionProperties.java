@@ -0,0 +1,21 @@
+package ru.skillbox.task_tracker.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.users.deletion")
+public class UserDeletionProperties {
+
+    // Политика, если она не передана в запросе
+    private UserDeletePolicy defaultPolicy = UserDeletePolicy.DELETE;
+
+    // Пользователь, которому передаются задачи при REASSIGN, если он не передан в запросе
+    private String reassignTo;
+
+    // Сколько хранить информацию о завершённых удалениях
+    private Duration jobRetention = Duration.ofHours(1);
+}
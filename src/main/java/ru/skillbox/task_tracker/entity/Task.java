@@ -6,7 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.ReadOnlyProperty;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 
 import java.time.Instant;
 import java.util.HashSet;
@@ -37,6 +39,14 @@ public class Task {
 
     private TaskStatus status;
 
+    // Увеличивается при каждом изменении задачи, используется для оптимистической блокировки
+    @Version
+    private Long version;
+
+    // Релевантность при полнотекстовом поиске, в базу не записывается
+    @TextScore
+    private Float score;
+
     @ReadOnlyProperty
     private User author;
 
@@ -0,0 +1,34 @@
+package ru.skillbox.task_tracker.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Счётчики задач пользователя по статусам; id документа - id пользователя
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "task_counters")
+public class TaskCounters {
+
+    // Ключ для задач без статуса
+    public static final String NO_STATUS = "NONE";
+
+    @Id
+    private String userId;
+
+    // Задачи, где пользователь автор, по статусу
+    private Map<String, Long> authored = new HashMap<>();
+
+    // Задачи, где пользователь исполнитель, по статусу
+    private Map<String, Long> assigned = new HashMap<>();
+
+    public static String statusKey(TaskStatus status) {
+        return status != null ? status.name() : NO_STATUS;
+    }
+}
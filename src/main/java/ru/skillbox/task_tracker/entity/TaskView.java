@@ -0,0 +1,46 @@
+package ru.skillbox.task_tracker.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+// Денормализованная проекция задачи: пользователи уже вложены в документ и не подгружаются при чтении
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "task_views")
+public class TaskView {
+
+    @Id
+    private String id;
+
+    private String name;
+
+    private String description;
+
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    private String authorId;
+
+    private String assigneeId;
+
+    private Set<String> observerIds;
+
+    private TaskStatus status;
+
+    private Long version;
+
+    private User author;
+
+    private User assignee;
+
+    private Set<User> observers = new HashSet<>();
+}
@@ -0,0 +1,7 @@
+package ru.skillbox.task_tracker.exception;
+
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.skillbox.task_tracker.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.skillbox.task_tracker.exception;
+
+import java.time.Duration;
+
+// Запрос не принят из-за перегрузки; клиенту стоит повторить его через retryAfter
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
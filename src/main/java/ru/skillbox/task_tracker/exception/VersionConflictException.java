@@ -0,0 +1,7 @@
+package ru.skillbox.task_tracker.exception;
+
+public class VersionConflictException extends RuntimeException {
+    public VersionConflictException(String message) {
+        super(message);
+    }
+}
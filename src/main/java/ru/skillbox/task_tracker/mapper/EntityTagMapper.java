@@ -0,0 +1,119 @@
+package ru.skillbox.task_tracker.mapper;
+
+import org.springframework.stereotype.Component;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.exception.PreconditionFailedException;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+import ru.skillbox.task_tracker.web.model.UserResponse;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Строгие ETag задач и пользователей. ETag задачи строится из версии и updatedAt и различается
+ * по представлению; для полного представления в него входят ещё и данные вложенных пользователей,
+ * потому что переименование пользователя меняет ответ, но не версию задачи.
+ * У пользователей версии нет, их ETag - хеш содержимого.
+ */
+@Component
+public class EntityTagMapper {
+
+    public String task(TaskResponse task, TaskProjection projection) {
+        Stream<UserResponse> users = projection.isHydrated()
+                ? Stream.concat(Stream.of(task.getAuthor(), task.getAssignee()),
+                task.getObservers() != null ? task.getObservers().stream() : Stream.empty())
+                : Stream.empty();
+        return task(task.getVersion(), task.getUpdatedAt(), projection, users
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(UserResponse::getId, this::userHash, (first, second) -> first, TreeMap::new)));
+    }
+
+    // users - пользователи задачи, нужны только для полного представления
+    public String task(Task task, Collection<User> users, TaskProjection projection) {
+        return task(task.getVersion(), task.getUpdatedAt(), projection, projection.isHydrated()
+                ? users.stream().collect(Collectors.toMap(User::getId, this::userHash, (first, second) -> first, TreeMap::new))
+                : Map.of());
+    }
+
+    public String user(UserResponse user) {
+        return quote("u-" + Integer.toHexString(userHash(user)));
+    }
+
+    public String user(User user) {
+        return quote("u-" + Integer.toHexString(userHash(user)));
+    }
+
+    // Версия задачи из If-Match. null - заголовка нет или передан *, то есть версия не проверяется
+    public Long version(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = tags(ifMatch)
+                .map(tag -> {
+                    int separator = tag.indexOf('-');
+                    try {
+                        // Слабые ETag при If-Match не сравниваются
+                        return tag.startsWith("\"") && separator > 1 ? Long.valueOf(tag.substring(1, separator)) : null;
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                })
+                .collect(Collectors.toSet());
+        if (versions.size() != 1 || versions.contains(null)) {
+            throw new PreconditionFailedException("If-Match must contain a single task ETag: " + ifMatch);
+        }
+        return versions.iterator().next();
+    }
+
+    // Сравнение для If-None-Match (слабое) и If-Match (строгое) со списком ETag или *
+    public boolean matches(String header, String etag, boolean strong) {
+        if (header.trim().equals("*")) {
+            return true;
+        }
+        return tags(header)
+                .filter(tag -> !strong || !tag.startsWith("W/"))
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(etag::equals);
+    }
+
+    private String task(Long version, Instant updatedAt, TaskProjection projection, Map<String, Integer> userHashes) {
+        StringBuilder tag = new StringBuilder()
+                .append(version != null ? version : 0)
+                .append('-').append(updatedAt != null ? updatedAt.toEpochMilli() : 0)
+                .append('-').append(projection.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        if (projection.isHydrated()) {
+            tag.append('-').append(Integer.toHexString(userHashes.entrySet().stream()
+                    .mapToInt(entry -> Objects.hash(entry.getKey(), entry.getValue()))
+                    .reduce(17, (hash, next) -> 31 * hash + next)));
+        }
+        return quote(tag.toString());
+    }
+
+    private int userHash(UserResponse user) {
+        return Objects.hash(user.getId(), user.getName(), user.getEmail());
+    }
+
+    private int userHash(User user) {
+        return Objects.hash(user.getId(), user.getName(), user.getEmail());
+    }
+
+    private static Stream<String> tags(String header) {
+        return Arrays.stream(header.split(","))
+                .map(String::trim)
+                .filter(tag -> !tag.isEmpty());
+    }
+
+    private static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+}
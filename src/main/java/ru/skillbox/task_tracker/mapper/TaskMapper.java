@@ -1,17 +1,22 @@
 package ru.skillbox.task_tracker.mapper;
 
+import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.NullValuePropertyMappingStrategy;
 import org.mapstruct.ReportingPolicy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskView;
 import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.web.model.TaskExportResponse;
 import ru.skillbox.task_tracker.web.model.TaskRequest;
 import ru.skillbox.task_tracker.web.model.TaskResponse;
 import ru.skillbox.task_tracker.web.model.UserResponse;
 
-import java.util.List;
+import java.util.Collection;
 import java.util.stream.Collectors;
 
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE, uses = {UserMapper.class})
@@ -20,25 +25,55 @@ public interface TaskMapper {
     // MapStruct маппинг
     TaskResponse toDto(Task task);
 
+    TaskResponse toDto(TaskView taskView);
+
+    // Только собственные поля задачи и id пользователей, без вложенных пользователей
+    @Mapping(target = "author", ignore = true)
+    @Mapping(target = "assignee", ignore = true)
+    @Mapping(target = "observers", ignore = true)
+    TaskResponse toDtoWithoutUsers(Task task);
+
+    TaskView toView(Task task);
+
+    TaskExportResponse toExport(TaskResponse response);
+
     @Mapping(target = "id", expression = "java(generateId())")
+    @Mapping(target = "version", ignore = true)
     Task toEntity(TaskRequest task);
 
+    // Частичное обновление: заполнены только переданные поля
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "observers", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Task toPatch(TaskRequest task);
+
+    Task copy(Task task);
+
+    // Применяет не-null поля патча так же, как $set в TaskRepository.updateFields
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "author", ignore = true)
+    @Mapping(target = "assignee", ignore = true)
+    @Mapping(target = "observers", ignore = true)
+    void applyPatch(Task patch, @MappingTarget Task task);
+
     // Метод с ручным маппингом для реактивных типов
     default Mono<TaskResponse> toDto(Task task, Mono<User> authorMono, Mono<User> assigneeMono, Flux<User> observersFlux, UserMapper userMapper) {
         return Mono.zip(authorMono, assigneeMono, observersFlux.collectList())
-                .map(tuple -> {
-                    User author = tuple.getT1();
-                    User assignee = tuple.getT2();
-                    List<User> observers = tuple.getT3();
-
-                    TaskResponse taskResponse = toDto(task);
-                    taskResponse.setAuthor(userMapper.toDto(author));
-                    taskResponse.setAssignee(userMapper.toDto(assignee));
-                    taskResponse.setObservers(observers.stream()
-                            .map(userMapper::toDto)
-                            .collect(Collectors.toSet()));
-                    return taskResponse;
-                });
+                .map(tuple -> toDto(task, tuple.getT1(), tuple.getT2(), tuple.getT3(), userMapper));
+    }
+
+    // Маппинг задачи с уже загруженными пользователями
+    default TaskResponse toDto(Task task, User author, User assignee, Collection<User> observers, UserMapper userMapper) {
+        TaskResponse taskResponse = toDto(task);
+        taskResponse.setAuthor(userMapper.toDto(author));
+        taskResponse.setAssignee(userMapper.toDto(assignee));
+        taskResponse.setObservers(observers.stream()
+                .map(userMapper::toDto)
+                .collect(Collectors.toSet()));
+        return taskResponse;
     }
 
     // Метод генерации id
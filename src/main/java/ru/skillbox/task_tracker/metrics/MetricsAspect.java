@@ -0,0 +1,140 @@
+package ru.skillbox.task_tracker.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.repository.UserRepository;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Метрики сервисов, репозиториев и мапперов.
+ * <ul>
+ *     <li>{@code service.*} - метрики Reactor ({@code flow.duration}, {@code subscribed} и др.) на каждый метод сервиса;</li>
+ *     <li>{@code service.user.lookups} - сколько раз за вызов сервиса искались пользователи;</li>
+ *     <li>{@code repository.method} - ключ контекста, по которому команды Mongo помечаются методом репозитория;</li>
+ *     <li>{@code mapper} - время маппинга.</li>
+ * </ul>
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MetricsAspect {
+
+    // Ключ контекста Reactor с именем метода репозитория, см. RepositoryMethodTagsProvider
+    static final String REPOSITORY_METHOD_KEY = "repository.method";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Class<?>, String> names = new ConcurrentHashMap<>();
+
+    // Мапперы вызываются на каждую задачу ответа, поэтому таймер не ищется в реестре при каждом вызове
+    private final Map<Method, Timer> mapperTimers = new ConcurrentHashMap<>();
+
+    // Сводка пользовательских запросов записывается на каждый вызов сервиса, поэтому тоже берётся из кэша
+    private final Map<Method, DistributionSummary> userLookups = new ConcurrentHashMap<>();
+
+    @Around("execution(* ru.skillbox.task_tracker.service.*Service.*(..))")
+    @SuppressWarnings("unchecked")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        String service = names.computeIfAbsent(joinPoint.getTarget().getClass(), type -> interfaceName(type, "Service"));
+        String method = joinPoint.getSignature().getName();
+        Method serviceMethod = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object result = joinPoint.proceed();
+
+        if (result instanceof Mono<?> mono) {
+            Mono<Object> timed = ((Mono<Object>) mono).name("service").tag("service", service).tag("method", method)
+                    .tap(Micrometer.metrics(meterRegistry));
+            return Mono.deferContextual(context -> context.hasKey(UserLookups.CONTEXT_KEY)
+                    ? timed
+                    : countUserLookups(timed, userLookups(serviceMethod, service, method)));
+        }
+        if (result instanceof Flux<?> flux) {
+            Flux<Object> timed = ((Flux<Object>) flux).name("service").tag("service", service).tag("method", method)
+                    .tap(Micrometer.metrics(meterRegistry));
+            return Flux.deferContextual(context -> context.hasKey(UserLookups.CONTEXT_KEY)
+                    ? timed
+                    : countUserLookups(timed, userLookups(serviceMethod, service, method)));
+        }
+        return result;
+    }
+
+    @Around("execution(* *(..)) && bean(*Repository)")
+    public Object tagRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        String repository = names.computeIfAbsent(joinPoint.getTarget().getClass(), type -> interfaceName(type, "Repository"));
+        String method = repository + "." + joinPoint.getSignature().getName();
+        boolean userLookup = joinPoint.getTarget() instanceof UserRepository
+                && joinPoint.getSignature().getName().startsWith("find");
+        Object result = joinPoint.proceed();
+
+        if (result instanceof Mono<?> mono) {
+            Mono<?> tagged = mono.contextWrite(context -> context.put(REPOSITORY_METHOD_KEY, method));
+            return userLookup ? UserLookups.counted(tagged) : tagged;
+        }
+        if (result instanceof Flux<?> flux) {
+            Flux<?> tagged = flux.contextWrite(context -> context.put(REPOSITORY_METHOD_KEY, method));
+            return userLookup ? UserLookups.counted(tagged) : tagged;
+        }
+        return result;
+    }
+
+    @Around("execution(* ru.skillbox.task_tracker.mapper.*Mapper.*(..))")
+    public Object timeMapper(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Timer timer = mapperTimers.computeIfAbsent(signature.getMethod(), method -> Timer.builder("mapper")
+                .tag("mapper", signature.getDeclaringType().getSimpleName())
+                .tag("method", signature.getName())
+                .register(meterRegistry));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            sample.stop(timer);
+        }
+    }
+
+    private <T> Mono<T> countUserLookups(Mono<T> call, DistributionSummary summary) {
+        AtomicInteger lookups = new AtomicInteger();
+        return call
+                .doFinally(signal -> summary.record(lookups.get()))
+                .contextWrite(context -> context.put(UserLookups.CONTEXT_KEY, lookups));
+    }
+
+    private <T> Flux<T> countUserLookups(Flux<T> call, DistributionSummary summary) {
+        AtomicInteger lookups = new AtomicInteger();
+        return call
+                .doFinally(signal -> summary.record(lookups.get()))
+                .contextWrite(context -> context.put(UserLookups.CONTEXT_KEY, lookups));
+    }
+
+    private DistributionSummary userLookups(Method serviceMethod, String service, String method) {
+        return userLookups.computeIfAbsent(serviceMethod, key -> DistributionSummary.builder("service.user.lookups")
+                .description("User lookups per service call")
+                .tag("service", service)
+                .tag("method", method)
+                .register(meterRegistry));
+    }
+
+    // Репозитории Spring Data - прокси, поэтому и для сервисов, и для репозиториев берётся имя интерфейса приложения
+    private String interfaceName(Class<?> type, String suffix) {
+        return ClassUtils.getAllInterfacesForClassAsSet(type).stream()
+                .filter(candidate -> candidate.getPackageName().startsWith("ru.skillbox.task_tracker"))
+                .filter(candidate -> candidate.getSimpleName().endsWith(suffix))
+                .map(Class::getSimpleName)
+                .findFirst()
+                .orElse(type.getSimpleName());
+    }
+}
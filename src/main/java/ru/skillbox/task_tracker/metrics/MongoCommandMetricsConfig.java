@@ -0,0 +1,52 @@
+package ru.skillbox.task_tracker.metrics;
+
+import com.mongodb.event.CommandEvent;
+import com.mongodb.reactivestreams.client.ReactiveContextProvider;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.mongodb.DefaultMongoCommandTagsProvider;
+import io.micrometer.core.instrument.binder.mongodb.MongoCommandTagsProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.CoreSubscriber;
+
+/**
+ * Таймер {@code mongodb.driver.commands} (слушатель команд от Spring Boot) получает тег
+ * {@code repository.method}: имя метода репозитория передаётся из контекста Reactor в контекст запроса драйвера.
+ */
+@Configuration
+public class MongoCommandMetricsConfig {
+
+    private static final String UNKNOWN = "none";
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer repositoryMethodContextProvider() {
+        return builder -> builder.contextProvider((ReactiveContextProvider) subscriber -> {
+            ReactorRequestContext requestContext = new ReactorRequestContext();
+            if (subscriber instanceof CoreSubscriber<?> coreSubscriber) {
+                coreSubscriber.currentContext().<String>getOrEmpty(MetricsAspect.REPOSITORY_METHOD_KEY)
+                        .ifPresent(method -> requestContext.put(MetricsAspect.REPOSITORY_METHOD_KEY, method));
+            }
+            return requestContext;
+        });
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoLatencyListener(MongoLatencyMonitor latencyMonitor) {
+        return builder -> builder.addCommandListener(latencyMonitor);
+    }
+
+    @Bean
+    public MongoCommandTagsProvider repositoryMethodTagsProvider() {
+        return new DefaultMongoCommandTagsProvider() {
+            @Override
+            public Iterable<Tag> commandTags(CommandEvent event) {
+                String method = event.getRequestContext() != null
+                        ? event.getRequestContext().getOrDefault(MetricsAspect.REPOSITORY_METHOD_KEY, UNKNOWN)
+                        : UNKNOWN;
+                return Tags.of(super.commandTags(event)).and(MetricsAspect.REPOSITORY_METHOD_KEY, method);
+            }
+        };
+    }
+}
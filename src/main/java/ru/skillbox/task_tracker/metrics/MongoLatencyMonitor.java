@@ -0,0 +1,67 @@
+package ru.skillbox.task_tracker.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.stereotype.Component;
+import ru.skillbox.task_tracker.config.AdmissionProperties;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скользящее среднее задержки команд Mongo, по нему фильтр допуска сбрасывает дорогие запросы.
+ * Вес замера зависит от прошедшего времени, а не от числа команд, поэтому частые быстрые команды
+ * не заглушают редкие медленные. Без новых команд оценка затухает к нулю, чтобы после полного
+ * сброса трафика запросы снова начали проходить.
+ */
+@Component
+public class MongoLatencyMonitor implements CommandListener {
+
+    // getMore change stream ждёт новых событий до maxAwaitTime и не говорит о нагрузке на базу
+    private static final Set<String> IGNORED_COMMANDS = Set.of("getMore", "killCursors", "hello", "isMaster", "ping");
+
+    private final double windowNanos;
+
+    private double average;
+    private long updatedAt = System.nanoTime();
+
+    public MongoLatencyMonitor(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.windowNanos = properties.getShedding().getWindow().toNanos();
+        TimeGauge.builder("mongodb.driver.commands.latency", this, TimeUnit.NANOSECONDS, MongoLatencyMonitor::latencyNanos)
+                .description("Exponentially decaying average latency of Mongo commands")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        record(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        record(event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    public synchronized double latencyNanos() {
+        return average * decay(System.nanoTime() - updatedAt);
+    }
+
+    void record(String command, long elapsedNanos) {
+        if (IGNORED_COMMANDS.contains(command)) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            double weight = decay(now - updatedAt);
+            average = average * weight + elapsedNanos * (1 - weight);
+            updatedAt = now;
+        }
+    }
+
+    private double decay(long elapsedNanos) {
+        return Math.exp(-Math.max(0, elapsedNanos) / windowNanos);
+    }
+}
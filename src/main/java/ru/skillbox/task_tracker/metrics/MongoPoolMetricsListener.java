@@ -0,0 +1,54 @@
+package ru.skillbox.task_tracker.metrics;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время ожидания соединения из пула и отказы пула. Размер пула и число выданных соединений
+ * ({@code mongodb.driver.pool.size}, {@code mongodb.driver.pool.checkedout}) уже публикует Spring Boot.
+ */
+@Component
+public class MongoPoolMetricsListener implements ConnectionPoolListener {
+
+    private final MeterRegistry meterRegistry;
+    private final Timer checkoutSucceeded;
+    private final Counter exhausted;
+
+    public MongoPoolMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.checkoutSucceeded = checkoutTimer("success");
+        this.exhausted = Counter.builder("mongodb.driver.pool.exhausted")
+                .description("Requests that timed out waiting for a free pooled connection")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkoutSucceeded.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        String reason = event.getReason().name().toLowerCase(Locale.ROOT);
+        checkoutTimer(reason).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        // TIMEOUT означает, что все соединения заняты дольше maxWaitTime
+        if (event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT) {
+            exhausted.increment();
+        }
+    }
+
+    private Timer checkoutTimer(String result) {
+        return Timer.builder("mongodb.driver.pool.checkout")
+                .description("Time waiting to check out a pooled connection")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
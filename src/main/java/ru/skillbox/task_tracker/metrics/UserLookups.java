@@ -0,0 +1,38 @@
+package ru.skillbox.task_tracker.metrics;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчик обращений за пользователями в рамках одного вызова сервиса.
+ * Счётчик кладёт в контекст Reactor {@link MetricsAspect}, а поиск пользователей увеличивает его,
+ * поэтому N+1 видно по росту числа обращений на запрос.
+ */
+public final class UserLookups {
+
+    static final String CONTEXT_KEY = UserLookups.class.getName();
+
+    private UserLookups() {
+    }
+
+    public static <T> Mono<T> counted(Mono<T> lookup) {
+        return Mono.deferContextual(context -> {
+            increment(context);
+            return lookup;
+        });
+    }
+
+    public static <T> Flux<T> counted(Flux<T> lookup) {
+        return Flux.deferContextual(context -> {
+            increment(context);
+            return lookup;
+        });
+    }
+
+    private static void increment(ContextView context) {
+        context.<AtomicInteger>getOrEmpty(CONTEXT_KEY).ifPresent(AtomicInteger::incrementAndGet);
+    }
+}
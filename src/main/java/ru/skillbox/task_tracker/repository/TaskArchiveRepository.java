@@ -0,0 +1,167 @@
+package ru.skillbox.task_tracker.repository;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Архив выполненных задач, разбитый на коллекции по месяцам updatedAt: tasks_archive_yyyy_MM.
+ * Документы архива имеют ту же схему, что и tasks. Раз месяцы не пересекаются, список архивных задач
+ * по убыванию updatedAt - это коллекции от новых к старым, прочитанные подряд.
+ */
+@Repository
+@Profile("!inmemory")
+@RequiredArgsConstructor
+public class TaskArchiveRepository {
+
+    static final String PREFIX = "tasks_archive_";
+
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM").withZone(ZoneOffset.UTC);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    // Коллекции, индексы которых уже созданы этим экземпляром приложения
+    private final Set<String> indexedPartitions = ConcurrentHashMap.newKeySet();
+
+    public static String partitionOf(Instant updatedAt) {
+        return PREFIX + PARTITION_FORMAT.format(updatedAt);
+    }
+
+    // Архивные коллекции от новых к старым
+    public Flux<String> findPartitions() {
+        return mongoTemplate.getCollectionNames()
+                .filter(name -> name.startsWith(PREFIX))
+                .sort(Comparator.reverseOrder());
+    }
+
+    // Записывает задачи в коллекции их месяцев. Повторная запись той же задачи заменяет документ
+    public Mono<Void> saveAll(List<Task> tasks) {
+        Map<String, List<Task>> byPartition = tasks.stream()
+                .collect(Collectors.groupingBy(task -> partitionOf(task.getUpdatedAt())));
+        return Flux.fromIterable(byPartition.entrySet())
+                .concatMap(entry -> ensureIndexes(entry.getKey())
+                        .then(Mono.defer(() -> {
+                            ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class, entry.getKey());
+                            for (Task task : entry.getValue()) {
+                                operations.replaceOne(Query.query(where("id").is(task.getId())), task,
+                                        FindAndReplaceOptions.options().upsert());
+                            }
+                            return operations.execute();
+                        })))
+                .then();
+    }
+
+    public Mono<Void> deleteAll(Collection<Task> tasks) {
+        Map<String, List<String>> byPartition = tasks.stream()
+                .collect(Collectors.groupingBy(task -> partitionOf(task.getUpdatedAt()),
+                        Collectors.mapping(Task::getId, Collectors.toList())));
+        return Flux.fromIterable(byPartition.entrySet())
+                .concatMap(entry -> mongoTemplate.remove(Query.query(where("id").in(entry.getValue())), Task.class, entry.getKey()))
+                .then();
+    }
+
+    // Месяц задачи по id неизвестен, поэтому коллекции просматриваются от новых к старым до первой находки
+    public Mono<Task> findOne(String id, TaskProjection projection) {
+        return findPartitions()
+                .concatMap(partition -> mongoTemplate.findOne(
+                        TaskRepositoryCustomImpl.project(Query.query(where("id").is(id)), projection), Task.class, partition), 1)
+                .next();
+    }
+
+    public Flux<Task> findPage(TaskFilter filter, TaskCursor after, int limit, TaskProjection projection) {
+        List<Criteria> criteria = TaskRepositoryCustomImpl.filterCriteria(filter);
+        if (after != null) {
+            criteria.add(TaskRepositoryCustomImpl.afterCursor(after));
+        }
+        String lastPartition = after != null && after.getUpdatedAt() != null ? partitionOf(after.getUpdatedAt()) : null;
+        Function<String, Query> query = partition -> TaskRepositoryCustomImpl.project(
+                new Query(criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria))
+                        .with(Sort.by(Sort.Direction.DESC, "updatedAt", "id"))
+                        .limit(limit), projection);
+        // Коллекции новее курсора пропускаются, следующая коллекция читается, только если страница не набрана
+        return findPartitions()
+                .filter(partition -> lastPartition == null || partition.compareTo(lastPartition) <= 0)
+                .concatMap(partition -> mongoTemplate.find(query.apply(partition), Task.class, partition), 1)
+                .take(limit, true);
+    }
+
+    public Mono<Long> deleteAllReferencing(String userId) {
+        return sum(partition -> mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                        where("authorId").is(userId),
+                        where("assigneeId").is(userId),
+                        where("observerIds").is(userId))), Task.class, partition)
+                .map(DeleteResult::getDeletedCount));
+    }
+
+    public Mono<Long> deleteAllAuthoredOrAssigned(String userId) {
+        return sum(partition -> mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                        where("authorId").is(userId),
+                        where("assigneeId").is(userId))), Task.class, partition)
+                .map(DeleteResult::getDeletedCount));
+    }
+
+    // В архиве updatedAt не меняется, иначе задача оказалась бы не в своей коллекции
+    public Mono<Long> reassign(String fromUserId, String toUserId) {
+        return sum(partition -> mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class, partition)
+                .updateMulti(Query.query(where("authorId").is(fromUserId)), new Update().set("authorId", toUserId))
+                .updateMulti(Query.query(where("assigneeId").is(fromUserId)), new Update().set("assigneeId", toUserId))
+                .execute()
+                .map(result -> (long) result.getModifiedCount()));
+    }
+
+    public Mono<Long> removeObserverEverywhere(String userId) {
+        return sum(partition -> mongoTemplate.updateMulti(Query.query(where("observerIds").is(userId)),
+                        new Update().pull("observerIds", userId), Task.class, partition)
+                .map(UpdateResult::getModifiedCount));
+    }
+
+    private Mono<Long> sum(Function<String, Mono<Long>> operation) {
+        return findPartitions()
+                .concatMap(operation)
+                .reduce(0L, Long::sum);
+    }
+
+    // Архив читается редко: индексы только для списка и для каскадного удаления пользователя
+    private Mono<Void> ensureIndexes(String partition) {
+        if (indexedPartitions.contains(partition)) {
+            return Mono.empty();
+        }
+        return Flux.just(
+                        new Index().on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC).named("updatedAt_id"),
+                        new Index().on("authorId", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                                .named("authorId_updatedAt_id"),
+                        new Index().on("assigneeId", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                                .named("assigneeId_updatedAt_id"),
+                        new Index().on("observerIds", Sort.Direction.ASC).named("observerIds"))
+                .concatMap(index -> mongoTemplate.indexOps(partition).ensureIndex(index))
+                .then(Mono.fromRunnable(() -> indexedPartitions.add(partition)));
+    }
+}
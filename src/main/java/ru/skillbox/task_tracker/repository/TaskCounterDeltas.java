@@ -0,0 +1,45 @@
+package ru.skillbox.task_tracker.repository;
+
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskCounters;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Изменения счётчиков {@link TaskCounters}, накопленные по нескольким задачам, чтобы записать их одним bulkWrite.
+ * Взаимно погашенные изменения (задача обновлена без смены автора, исполнителя и статуса) в базу не уходят.
+ */
+public class TaskCounterDeltas {
+
+    // userId -> поле счётчика ("authored.TODO") -> приращение
+    private final Map<String, Map<String, Long>> deltas = new HashMap<>();
+
+    public TaskCounterDeltas add(Task task, long sign) {
+        String status = TaskCounters.statusKey(task.getStatus());
+        add(task.getAuthorId(), "authored." + status, sign);
+        add(task.getAssigneeId(), "assigned." + status, sign);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return byUser().isEmpty();
+    }
+
+    // Только ненулевые приращения
+    public Map<String, Map<String, Long>> byUser() {
+        Map<String, Map<String, Long>> result = new HashMap<>();
+        deltas.forEach((userId, fields) -> fields.forEach((field, delta) -> {
+            if (delta != 0) {
+                result.computeIfAbsent(userId, key -> new HashMap<>()).put(field, delta);
+            }
+        }));
+        return result;
+    }
+
+    private void add(String userId, String field, long delta) {
+        if (userId != null) {
+            deltas.computeIfAbsent(userId, key -> new HashMap<>()).merge(field, delta, Long::sum);
+        }
+    }
+}
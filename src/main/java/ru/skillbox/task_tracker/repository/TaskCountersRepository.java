@@ -0,0 +1,7 @@
+package ru.skillbox.task_tracker.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import ru.skillbox.task_tracker.entity.TaskCounters;
+
+public interface TaskCountersRepository extends ReactiveMongoRepository<TaskCounters, String>, TaskCountersRepositoryCustom {
+}
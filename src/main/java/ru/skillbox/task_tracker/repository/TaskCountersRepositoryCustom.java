@@ -0,0 +1,17 @@
+package ru.skillbox.task_tracker.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface TaskCountersRepositoryCustom {
+
+    // Применяет приращения через $inc с upsert одним неупорядоченным bulkWrite
+    Mono<Void> apply(TaskCounterDeltas deltas);
+
+    // Пересчитывает счётчики пользователей агрегацией по tasks; пользователи без задач получают нулевые счётчики
+    Mono<Void> rebuild(Collection<String> userIds);
+
+    // Пересчитывает счётчики всех пользователей, у которых есть задачи, записывая результат через $merge
+    Mono<Void> rebuildAll();
+}
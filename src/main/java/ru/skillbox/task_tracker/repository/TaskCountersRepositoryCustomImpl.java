@@ -0,0 +1,111 @@
+package ru.skillbox.task_tracker.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskCounters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class TaskCountersRepositoryCustomImpl implements TaskCountersRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Void> apply(TaskCounterDeltas deltas) {
+        Map<String, Map<String, Long>> byUser = deltas.byUser();
+        if (byUser.isEmpty()) {
+            return Mono.empty();
+        }
+        ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TaskCounters.class);
+        byUser.forEach((userId, fields) -> {
+            Update update = new Update();
+            fields.forEach(update::inc);
+            operations.upsert(Query.query(where("userId").is(userId)), update);
+        });
+        return operations.execute().then();
+    }
+
+    @Override
+    public Mono<Void> rebuild(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return Mono.empty();
+        }
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(stage("$match", new Document("$or", List.of(
+                new Document("authorId", new Document("$in", userIds)),
+                new Document("assigneeId", new Document("$in", userIds))))));
+        stages.addAll(countStages(userIds));
+
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), mongoTemplate.getCollectionName(Task.class),
+                        TaskCounters.class)
+                .collectMap(TaskCounters::getUserId)
+                .flatMap(counted -> {
+                    // Документ заменяется целиком, в том числе для пользователей, у которых задач не осталось
+                    ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TaskCounters.class);
+                    for (String userId : userIds) {
+                        TaskCounters counters = counted.getOrDefault(userId, new TaskCounters());
+                        counters.setUserId(userId);
+                        operations.replaceOne(Query.query(where("userId").is(userId)), counters,
+                                FindAndReplaceOptions.options().upsert());
+                    }
+                    return operations.execute();
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<Void> rebuildAll() {
+        List<AggregationOperation> stages = new ArrayList<>(countStages(null));
+        stages.add(stage("$merge", new Document("into", mongoTemplate.getCollectionName(TaskCounters.class))
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert")));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), mongoTemplate.getCollectionName(Task.class),
+                        Document.class)
+                .then();
+    }
+
+    // Задача -> (пользователь, роль, статус) -> число задач -> документ {_id, authored: {...}, assigned: {...}}
+    private List<AggregationOperation> countStages(Collection<String> userIds) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(stage("$project", new Document("status", new Document("$ifNull", List.of("$status", TaskCounters.NO_STATUS)))
+                .append("refs", List.of(
+                        new Document("user", "$authorId").append("role", "authored"),
+                        new Document("user", "$assigneeId").append("role", "assigned")))));
+        stages.add(stage("$unwind", "$refs"));
+        if (userIds != null) {
+            // Из задачи пользователя нужна только его роль, соавтор мог не входить в запрошенных
+            stages.add(stage("$match", new Document("refs.user", new Document("$in", userIds))));
+        }
+        stages.add(stage("$group", new Document("_id", new Document("user", "$refs.user").append("role", "$refs.role").append("status", "$status"))
+                .append("count", new Document("$sum", 1L))));
+        stages.add(stage("$group", new Document("_id", new Document("user", "$_id.user").append("role", "$_id.role"))
+                .append("statuses", new Document("$push", new Document("k", "$_id.status").append("v", "$count")))));
+        stages.add(stage("$group", new Document("_id", "$_id.user")
+                .append("roles", new Document("$push", new Document("k", "$_id.role")
+                        .append("v", new Document("$arrayToObject", "$statuses"))))));
+        stages.add(stage("$replaceRoot", new Document("newRoot", new Document("$mergeObjects", List.of(
+                new Document("_id", "$_id").append("authored", new Document()).append("assigned", new Document()),
+                new Document("$arrayToObject", "$roles"))))));
+        return stages;
+    }
+
+    private static AggregationOperation stage(String name, Object body) {
+        return context -> new Document(name, body);
+    }
+}
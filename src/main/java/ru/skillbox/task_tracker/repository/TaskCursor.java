@@ -0,0 +1,43 @@
+package ru.skillbox.task_tracker.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+// Позиция в списке задач, отсортированном по (updatedAt, id) по убыванию.
+// Клиенту отдаётся в виде непрозрачной строки. updatedAt == null - задача без updatedAt, такие идут последними
+@Data
+@AllArgsConstructor
+public class TaskCursor {
+
+    private Instant updatedAt;
+
+    private String id;
+
+    public static TaskCursor after(Task task) {
+        return new TaskCursor(task.getUpdatedAt(), task.getId());
+    }
+
+    public static TaskCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            String time = decoded.substring(0, separator);
+            return new TaskCursor(
+                    time.isEmpty() ? null : Instant.ofEpochMilli(Long.parseLong(time)),
+                    decoded.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = (updatedAt != null ? String.valueOf(updatedAt.toEpochMilli()) : "") + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,19 @@
+package ru.skillbox.task_tracker.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+
+// Необязательные фильтры списка задач, null означает отсутствие фильтра
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskFilter {
+
+    private TaskStatus status;
+
+    private String assigneeId;
+
+    private String authorId;
+}
@@ -0,0 +1,68 @@
+package ru.skillbox.task_tracker.repository;
+
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.exception.InvalidRequestException;
+
+import java.util.List;
+import java.util.Locale;
+
+// Набор полей задачи в ответе. Поля запрашиваются у Mongo проекцией, пользователи подгружаются только для FULL
+public enum TaskProjection {
+
+    // Все поля задачи, id пользователей и сами пользователи
+    FULL(null, true),
+
+    // Все поля задачи и id пользователей, без вложенных пользователей
+    IDS_ONLY(null, false),
+
+    // Только поля для списков; updatedAt и id нужны ещё и для курсора страницы
+    SUMMARY(List.of("id", "name", "status", "authorId", "assigneeId", "updatedAt", "version"), false);
+
+    // null - документ читается целиком
+    private final List<String> fields;
+
+    private final boolean hydrated;
+
+    TaskProjection(List<String> fields, boolean hydrated) {
+        this.fields = fields;
+        this.hydrated = hydrated;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public boolean isHydrated() {
+        return hydrated;
+    }
+
+    // Та же проекция для задачи, уже прочитанной целиком: копия только с полями проекции
+    public Task project(Task task) {
+        if (fields == null) {
+            return task;
+        }
+        Task projected = new Task();
+        for (String field : fields) {
+            switch (field) {
+                case "id" -> projected.setId(task.getId());
+                case "name" -> projected.setName(task.getName());
+                case "status" -> projected.setStatus(task.getStatus());
+                case "authorId" -> projected.setAuthorId(task.getAuthorId());
+                case "assigneeId" -> projected.setAssigneeId(task.getAssigneeId());
+                case "updatedAt" -> projected.setUpdatedAt(task.getUpdatedAt());
+                case "version" -> projected.setVersion(task.getVersion());
+                default -> throw new IllegalStateException("Projection field is not supported: " + field);
+            }
+        }
+        return projected;
+    }
+
+    // Значение параметра view: full, ids-only, summary
+    public static TaskProjection fromParameter(String view) {
+        try {
+            return valueOf(view.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unknown view: " + view + ", expected one of full, ids-only, summary");
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package ru.skillbox.task_tracker.repository;
 
-import org.reactivestreams.Publisher;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.skillbox.task_tracker.entity.Task;
 
-public interface TaskRepository extends ReactiveMongoRepository<Task, String> {
+public interface TaskRepository extends ReactiveMongoRepository<Task, String>, TaskRepositoryCustom {
     Flux<Task> findByAssigneeId(String assigneeId);
 
     // Найти все задачи по authorId
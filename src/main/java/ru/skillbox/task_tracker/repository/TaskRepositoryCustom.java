@@ -0,0 +1,94 @@
+package ru.skillbox.task_tracker.repository;
+
+import org.bson.BsonValue;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface TaskRepositoryCustom {
+
+    // Change stream коллекции tasks с полным документом после изменения; resumeToken - продолжить после события
+    Flux<ChangeStreamEvent<Task>> watch(BsonValue resumeToken);
+
+    // Выполненные задачи, не менявшиеся с cutoff, от самых старых
+    Flux<Task> findArchivable(Instant cutoff, int limit);
+
+    // Удаляет перенесённые в архив задачи, если они всё ещё выполнены и не менялись с cutoff
+    Mono<Long> deleteArchived(Collection<String> ids, Instant cutoff);
+
+    // Версия задачи: заполнены id, version, updatedAt и id пользователей
+    Mono<Task> findVersion(String id);
+
+    // Задача только с полями проекции
+    Mono<Task> findOne(String id, TaskProjection projection);
+
+    // Страница задач после курсора (keyset), стоимость не зависит от глубины страницы
+    Flux<Task> findPage(TaskFilter filter, TaskCursor after, int limit, TaskProjection projection);
+
+    // Полнотекстовый поиск по названию и описанию, по убыванию релевантности
+    Flux<Task> search(String text, TaskFilter filter, int skip, int limit, TaskProjection projection);
+
+    // Все задачи курсором, только с полями проекции
+    Flux<Task> findAll(TaskProjection projection);
+
+    // Задача с author, assignee и observers, присоединёнными агрегацией $lookup к users
+    Mono<Task> findOneWithUsers(String id);
+
+    // Все задачи курсором агрегации с присоединёнными $lookup пользователями
+    Flux<Task> findAllWithUsers();
+
+    // Существующие задачи из переданных id; заполнены только id, автор, исполнитель и статус
+    Flux<Task> findRefs(Collection<String> ids);
+
+    // Авторы и исполнители задач, где пользователь автор, исполнитель или наблюдатель
+    Flux<String> findUserIdsSharingTasks(String userId);
+
+    // Вставка одним неупорядоченным bulkWrite. Возвращает ошибки по позиции задачи в списке
+    Mono<Map<Integer, String>> insertAll(List<Task> tasks);
+
+    // Для каждой задачи-патча выставляет её не-null поля через $set одним неупорядоченным bulkWrite.
+    // Возвращает ошибки по позиции патча в списке
+    Mono<Map<Integer, String>> updateAll(List<Task> patches);
+
+    // Отложенная запись одним неупорядоченным bulkWrite: новые задачи вставляются целиком, у остальных не-null поля
+    // патча выставляются через $set, если версия в базе равна baseVersions[i], и версия становится версией патча.
+    // Возвращает id задач, которые записать не удалось
+    Mono<Set<String>> writeAll(List<Task> inserts, List<Task> patches, List<Long> baseVersions);
+
+    // Выставляет не-null поля патча через $set и увеличивает версию. Если expectedVersion задана,
+    // обновление применяется только к задаче с этой версией. Возвращает задачу в состоянии до обновления
+    Mono<Task> updateFields(String id, Task patch, Long expectedVersion);
+
+    // Атомарно добавляет наблюдателей ($addToSet) и возвращает обновлённую задачу
+    Mono<Task> addObservers(String taskId, Collection<String> observerIds);
+
+    // Атомарно убирает наблюдателя ($pull) и возвращает обновлённую задачу
+    Mono<Task> removeObserver(String taskId, String observerId);
+
+    // Удаляет задачу (если expectedVersion задана - только этой версии) и возвращает удалённый документ;
+    // заполнены только id, автор, исполнитель и статус. Пусто, если удалять было нечего
+    Mono<Task> deleteAndReturn(String id, Long expectedVersion);
+
+    // Удаляет задачи за три запроса и возвращает удалённые документы с полями, как у deleteAndReturn. Задачу,
+    // которую одновременно удалил другой запрос, возвращает только один из них
+    Flux<Task> deleteAllAndReturn(Collection<String> ids);
+
+    // Одним deleteMany удаляет задачи, где пользователь автор, исполнитель или наблюдатель
+    Mono<Long> deleteAllReferencing(String userId);
+
+    // Одним deleteMany удаляет задачи, где пользователь автор или исполнитель
+    Mono<Long> deleteAllAuthoredOrAssigned(String userId);
+
+    // Передаёт другому пользователю задачи, где пользователь автор или исполнитель
+    Mono<Long> reassign(String fromUserId, String toUserId);
+
+    // Убирает пользователя из наблюдателей всех задач
+    Mono<Long> removeObserverEverywhere(String userId);
+}
@@ -0,0 +1,464 @@
+package ru.skillbox.task_tracker.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.client.model.changestream.FullDocument;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
+
+    // Метка удаления пачки: задачу забирает себе только один запрос
+    private static final String DELETE_TOKEN = "deleteToken";
+    private static final String DELETE_CLAIMED_AT = "deleteClaimedAt";
+
+    // Метку запроса, упавшего между пометкой и удалением, может забрать следующий запрос
+    private static final Duration DELETE_CLAIM_TIMEOUT = Duration.ofMinutes(1);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flux<ChangeStreamEvent<Task>> watch(BsonValue resumeToken) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (resumeToken != null) {
+            options.resumeAfter(resumeToken);
+        }
+        return mongoTemplate.changeStream(mongoTemplate.getCollectionName(Task.class), options.build(), Task.class);
+    }
+
+    @Override
+    public Flux<Task> findArchivable(Instant cutoff, int limit) {
+        Query query = Query.query(where("status").is(TaskStatus.DONE).and("updatedAt").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt", "id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Task.class);
+    }
+
+    @Override
+    public Mono<Long> deleteArchived(Collection<String> ids, Instant cutoff) {
+        // Задача, изменённая после чтения, получила новый updatedAt и остаётся в tasks
+        Query query = Query.query(where("id").in(ids).and("status").is(TaskStatus.DONE).and("updatedAt").lt(cutoff));
+        return mongoTemplate.remove(query, Task.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Mono<Task> findVersion(String id) {
+        Query query = Query.query(where("id").is(id));
+        query.fields().include("id", "version", "updatedAt", "authorId", "assigneeId", "observerIds");
+        return mongoTemplate.findOne(query, Task.class);
+    }
+
+    @Override
+    public Mono<Task> findOne(String id, TaskProjection projection) {
+        return mongoTemplate.findOne(project(Query.query(where("id").is(id)), projection), Task.class);
+    }
+
+    @Override
+    public Flux<Task> findPage(TaskFilter filter, TaskCursor after, int limit, TaskProjection projection) {
+        List<Criteria> criteria = filterCriteria(filter);
+        if (after != null) {
+            criteria.add(afterCursor(after));
+        }
+
+        Query query = new Query(criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria))
+                .with(Sort.by(Sort.Direction.DESC, "updatedAt", "id"))
+                .limit(limit);
+        return mongoTemplate.find(project(query, projection), Task.class);
+    }
+
+    @Override
+    public Flux<Task> search(String text, TaskFilter filter, int skip, int limit, TaskProjection projection) {
+        // Использует текстовый индекс task_text; при равной релевантности порядок задаёт id
+        Query query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(text))
+                .sortByScore()
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .skip(skip)
+                .limit(limit);
+        filterCriteria(filter).forEach(query::addCriteria);
+        return mongoTemplate.find(project(query, projection), Task.class);
+    }
+
+    @Override
+    public Flux<Task> findAll(TaskProjection projection) {
+        return mongoTemplate.find(project(new Query(), projection), Task.class);
+    }
+
+    @Override
+    public Mono<Task> findOneWithUsers(String id) {
+        // Агрегация без типа не переводит id в ObjectId, поэтому _id приводится так же, как при обычном чтении
+        Object documentId = mongoTemplate.getConverter().convertId(id, ObjectId.class);
+        return aggregateWithUsers(context -> new Document("$match", new Document("_id", documentId))).next();
+    }
+
+    @Override
+    public Flux<Task> findAllWithUsers() {
+        return aggregateWithUsers();
+    }
+
+    // $lookup к users для автора, исполнителя и наблюдателей и $project только нужных полей пользователей
+    private Flux<Task> aggregateWithUsers(AggregationOperation... filter) {
+        String users = mongoTemplate.getCollectionName(User.class);
+        List<AggregationOperation> stages = new ArrayList<>(List.of(filter));
+        // id пользователей, сгенерированные Mongo, лежат в users как ObjectId, а в задачах строками
+        stages.add(context -> new Document("$addFields", new Document()
+                .append("authorRef", toObjectId("$authorId"))
+                .append("assigneeRef", toObjectId("$assigneeId"))
+                .append("observerRefs", new Document("$map", new Document()
+                        .append("input", new Document("$ifNull", List.of("$observerIds", List.of())))
+                        .append("as", "observerId")
+                        .append("in", toObjectId("$$observerId"))))));
+        stages.add(Aggregation.lookup(users, "authorRef", "_id", "author"));
+        stages.add(Aggregation.lookup(users, "assigneeRef", "_id", "assignee"));
+        stages.add(Aggregation.lookup(users, "observerRefs", "_id", "observers"));
+        stages.add(context -> new Document("$project", new Document()
+                .append("name", 1)
+                .append("description", 1)
+                .append("createdAt", 1)
+                .append("updatedAt", 1)
+                .append("authorId", 1)
+                .append("assigneeId", 1)
+                .append("observerIds", 1)
+                .append("status", 1)
+                .append("version", 1)
+                .append("author", new Document("$arrayElemAt", List.of(userFields("$author"), 0)))
+                .append("assignee", new Document("$arrayElemAt", List.of(userFields("$assignee"), 0)))
+                .append("observers", userFields("$observers"))));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), mongoTemplate.getCollectionName(Task.class), Task.class);
+    }
+
+    // Строка с ObjectId превращается в ObjectId, остальные id остаются строками
+    private static Document toObjectId(String expression) {
+        return new Document("$convert", new Document()
+                .append("input", expression)
+                .append("to", "objectId")
+                .append("onError", expression)
+                .append("onNull", null));
+    }
+
+    private static Document userFields(String users) {
+        return new Document("$map", new Document()
+                .append("input", users)
+                .append("as", "user")
+                .append("in", new Document()
+                        .append("_id", "$$user._id")
+                        .append("name", "$$user.name")
+                        .append("email", "$$user.email")));
+    }
+
+    @Override
+    public Flux<Task> findRefs(Collection<String> ids) {
+        Query query = Query.query(where("id").in(ids));
+        query.fields().include("id", "authorId", "assigneeId", "status");
+        return mongoTemplate.find(query, Task.class);
+    }
+
+    @Override
+    public Flux<String> findUserIdsSharingTasks(String userId) {
+        Query query = Query.query(new Criteria().orOperator(
+                where("authorId").is(userId),
+                where("assigneeId").is(userId),
+                where("observerIds").is(userId)));
+        return Flux.concat(
+                        mongoTemplate.findDistinct(query, "authorId", Task.class, String.class),
+                        mongoTemplate.findDistinct(query, "assigneeId", Task.class, String.class))
+                .distinct();
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertAll(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        // bulkWrite не инициализирует поле @Version, как это делает save
+        tasks.forEach(task -> task.setVersion(0L));
+        return execute(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class)
+                .insert(tasks));
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> updateAll(List<Task> patches) {
+        if (patches.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class);
+        for (Task patch : patches) {
+            operations.updateOne(Query.query(where("id").is(patch.getId())), setNonNullFields(patch).inc("version", 1));
+        }
+        return execute(operations);
+    }
+
+    @Override
+    public Mono<Set<String>> writeAll(List<Task> inserts, List<Task> patches, List<Long> baseVersions) {
+        if (inserts.isEmpty() && patches.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class);
+        if (!inserts.isEmpty()) {
+            operations.insert(inserts);
+        }
+        for (int i = 0; i < patches.size(); i++) {
+            Task patch = patches.get(i);
+            operations.updateOne(Query.query(where("id").is(patch.getId()).and("version").is(baseVersions.get(i))),
+                    setNonNullFields(patch).set("version", patch.getVersion()));
+        }
+        return operations.execute()
+                .map(result -> Tuples.of(Set.<String>of(), result.getMatchedCount()))
+                .onErrorResume(error -> bulkWriteException(error) != null, error -> {
+                    MongoBulkWriteException e = bulkWriteException(error);
+                    return Mono.just(Tuples.of(
+                            e.getWriteErrors().stream()
+                                    .map(writeError -> writeError.getIndex() < inserts.size()
+                                            ? inserts.get(writeError.getIndex()).getId()
+                                            : patches.get(writeError.getIndex() - inserts.size()).getId())
+                                    .collect(Collectors.toSet()),
+                            e.getWriteResult().getMatchedCount()));
+                })
+                .flatMap(result -> {
+                    Set<String> failed = new HashSet<>(result.getT1());
+                    long expected = patches.stream().filter(patch -> !failed.contains(patch.getId())).count();
+                    if (result.getT2() == expected) {
+                        return Mono.just(failed);
+                    }
+                    // Часть патчей не нашла свою версию: записанные узнаются по версии, которая теперь в базе
+                    Map<String, Long> written = patches.stream()
+                            .collect(Collectors.toMap(Task::getId, Task::getVersion, (first, second) -> second));
+                    Query query = Query.query(where("id").in(written.keySet()));
+                    query.fields().include("id", "version");
+                    return mongoTemplate.find(query, Task.class)
+                            .filter(task -> task.getVersion().equals(written.get(task.getId())))
+                            .map(Task::getId)
+                            .collect(Collectors.toSet())
+                            .map(current -> {
+                                written.keySet().stream().filter(id -> !current.contains(id)).forEach(failed::add);
+                                return failed;
+                            });
+                });
+    }
+
+    @Override
+    public Mono<Task> updateFields(String id, Task patch, Long expectedVersion) {
+        Criteria criteria = where("id").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        // Прежнее состояние нужно, чтобы пересчитать счётчики задач по автору, исполнителю и статусу
+        return mongoTemplate.findAndModify(Query.query(criteria), setNonNullFields(patch).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(false), Task.class);
+    }
+
+    @Override
+    public Mono<Task> addObservers(String taskId, Collection<String> observerIds) {
+        Update update = new Update()
+                .addToSet("observerIds").each(observerIds.toArray())
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+        return mongoTemplate.findAndModify(Query.query(where("id").is(taskId)), update,
+                FindAndModifyOptions.options().returnNew(true), Task.class);
+    }
+
+    @Override
+    public Mono<Task> removeObserver(String taskId, String observerId) {
+        Update update = new Update()
+                .pull("observerIds", observerId)
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+        return mongoTemplate.findAndModify(Query.query(where("id").is(taskId)), update,
+                FindAndModifyOptions.options().returnNew(true), Task.class);
+    }
+
+    @Override
+    public Mono<Task> deleteAndReturn(String id, Long expectedVersion) {
+        Criteria criteria = where("id").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        Query query = Query.query(criteria);
+        query.fields().include("id", "authorId", "assigneeId", "status");
+        return mongoTemplate.findAndRemove(query, Task.class);
+    }
+
+    @Override
+    public Flux<Task> deleteAllAndReturn(Collection<String> ids) {
+        // deleteMany не возвращает документы, а find перед ним видит и задачи, которые удалит параллельный запрос.
+        // Поэтому задачи сначала помечаются меткой запроса одним updateMany, и удаляются только помеченные им
+        String token = new ObjectId().toHexString();
+        Instant now = Instant.now();
+        Query unclaimed = Query.query(new Criteria().andOperator(
+                where("id").in(ids),
+                new Criteria().orOperator(
+                        where(DELETE_TOKEN).exists(false),
+                        where(DELETE_CLAIMED_AT).lt(now.minus(DELETE_CLAIM_TIMEOUT)))));
+        Query claimed = Query.query(where(DELETE_TOKEN).is(token));
+        claimed.fields().include("id", "authorId", "assigneeId", "status");
+        return mongoTemplate.updateMulti(unclaimed, new Update().set(DELETE_TOKEN, token).set(DELETE_CLAIMED_AT, now), Task.class)
+                .filter(result -> result.getModifiedCount() > 0)
+                .flatMapMany(result -> mongoTemplate.find(claimed, Task.class)
+                        .collectList()
+                        .flatMapMany(tasks -> mongoTemplate.remove(Query.query(where(DELETE_TOKEN).is(token)), Task.class)
+                                .thenMany(Flux.fromIterable(tasks))));
+    }
+
+    @Override
+    public Mono<Long> deleteAllReferencing(String userId) {
+        Query query = Query.query(new Criteria().orOperator(
+                where("authorId").is(userId),
+                where("assigneeId").is(userId),
+                where("observerIds").is(userId)));
+        return mongoTemplate.remove(query, Task.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Mono<Long> deleteAllAuthoredOrAssigned(String userId) {
+        Query query = Query.query(new Criteria().orOperator(
+                where("authorId").is(userId),
+                where("assigneeId").is(userId)));
+        return mongoTemplate.remove(query, Task.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Mono<Long> reassign(String fromUserId, String toUserId) {
+        Instant now = Instant.now();
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Task.class)
+                .updateMulti(Query.query(where("authorId").is(fromUserId)),
+                        new Update().set("authorId", toUserId).set("updatedAt", now).inc("version", 1))
+                .updateMulti(Query.query(where("assigneeId").is(fromUserId)),
+                        new Update().set("assigneeId", toUserId).set("updatedAt", now).inc("version", 1))
+                .execute()
+                .map(result -> (long) result.getModifiedCount());
+    }
+
+    @Override
+    public Mono<Long> removeObserverEverywhere(String userId) {
+        Update update = new Update()
+                .pull("observerIds", userId)
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+        return mongoTemplate.updateMulti(Query.query(where("observerIds").is(userId)), update, Task.class)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    // Ограничивает читаемые поля, если проекция требует не весь документ
+    static Query project(Query query, TaskProjection projection) {
+        if (projection.getFields() != null) {
+            query.fields().include(projection.getFields().toArray(String[]::new));
+        }
+        return query;
+    }
+
+    // (updatedAt, id) < (cursor.updatedAt, cursor.id) в порядке сортировки Mongo: задачи без updatedAt идут
+    // после всех остальных, но $lt их не находит, поэтому они добавляются отдельным условием
+    static Criteria afterCursor(TaskCursor cursor) {
+        if (cursor.getUpdatedAt() == null) {
+            return new Criteria().andOperator(
+                    where("updatedAt").is(null),
+                    where("id").lt(cursor.getId()));
+        }
+        return new Criteria().orOperator(
+                where("updatedAt").lt(cursor.getUpdatedAt()),
+                where("updatedAt").is(null),
+                new Criteria().andOperator(
+                        where("updatedAt").is(cursor.getUpdatedAt()),
+                        where("id").lt(cursor.getId())));
+    }
+
+    static List<Criteria> filterCriteria(TaskFilter filter) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter.getStatus() != null) {
+            criteria.add(where("status").is(filter.getStatus()));
+        }
+        if (filter.getAssigneeId() != null) {
+            criteria.add(where("assigneeId").is(filter.getAssigneeId()));
+        }
+        if (filter.getAuthorId() != null) {
+            criteria.add(where("authorId").is(filter.getAuthorId()));
+        }
+        return criteria;
+    }
+
+    // $set только для заданных полей, остальные поля документа не трогаются
+    static Update setNonNullFields(Task patch) {
+        Update update = new Update();
+        if (patch.getName() != null) {
+            update.set("name", patch.getName());
+        }
+        if (patch.getDescription() != null) {
+            update.set("description", patch.getDescription());
+        }
+        if (patch.getStatus() != null) {
+            update.set("status", patch.getStatus());
+        }
+        if (patch.getAuthorId() != null) {
+            update.set("authorId", patch.getAuthorId());
+        }
+        if (patch.getAssigneeId() != null) {
+            update.set("assigneeId", patch.getAssigneeId());
+        }
+        if (patch.getObserverIds() != null) {
+            update.set("observerIds", patch.getObserverIds());
+        }
+        if (patch.getUpdatedAt() != null) {
+            update.set("updatedAt", patch.getUpdatedAt());
+        }
+        return update;
+    }
+
+    private Mono<Map<Integer, String>> execute(ReactiveBulkOperations operations) {
+        // В неупорядоченном режиме ошибка одной операции не останавливает остальные
+        return operations.execute()
+                .map(result -> Map.<Integer, String>of())
+                .onErrorResume(error -> bulkWriteException(error) != null, error -> Mono.just(bulkWriteException(error)
+                        .getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage, (first, second) -> first))));
+    }
+
+    // ReactiveBulkOperations переводит ошибки драйвера в DataAccessException, ошибки по операциям остаются в причине
+    static MongoBulkWriteException bulkWriteException(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkWriteException) {
+                return bulkWriteException;
+            }
+        }
+        return null;
+    }
+}
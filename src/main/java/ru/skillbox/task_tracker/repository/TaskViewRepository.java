@@ -0,0 +1,7 @@
+package ru.skillbox.task_tracker.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import ru.skillbox.task_tracker.entity.TaskView;
+
+public interface TaskViewRepository extends ReactiveMongoRepository<TaskView, String>, TaskViewRepositoryCustom {
+}
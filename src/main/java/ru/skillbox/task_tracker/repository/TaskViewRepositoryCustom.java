@@ -0,0 +1,27 @@
+package ru.skillbox.task_tracker.repository;
+
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.TaskView;
+import ru.skillbox.task_tracker.entity.User;
+
+import java.util.List;
+
+public interface TaskViewRepositoryCustom {
+
+    // Обновляет вложенного пользователя во всех проекциях, где он автор, исполнитель или наблюдатель.
+    // Возвращает число изменённых документов
+    Mono<Long> updateUser(User user);
+
+    // Записывает проекцию, если её нет или сохранённая версия ниже. false - уже есть та же или более новая
+    Mono<Boolean> saveIfNewer(TaskView view);
+
+    // Записывает проекцию, только если её ещё нет. false - проекция уже есть
+    Mono<Boolean> insertIfAbsent(TaskView view);
+
+    // Перезаписывает проекции одним bulkWrite, создавая отсутствующие; более новые проекции не трогаются
+    Mono<Void> upsertAll(List<TaskView> views);
+
+    // Удаляет проекции всех задач, где пользователь автор, исполнитель или наблюдатель.
+    // Проекции оставшихся задач будут построены заново при следующем чтении
+    Mono<Long> deleteAllReferencing(String userId);
+}
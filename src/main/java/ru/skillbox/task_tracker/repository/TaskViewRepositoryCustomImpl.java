@@ -0,0 +1,97 @@
+package ru.skillbox.task_tracker.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.ReplaceOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.TaskView;
+import ru.skillbox.task_tracker.entity.User;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class TaskViewRepositoryCustomImpl implements TaskViewRepositoryCustom {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Long> updateUser(User user) {
+        // Все три обновления уходят в базу одним bulkWrite
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TaskView.class)
+                .updateMulti(Query.query(where("authorId").is(user.getId())), new Update().set("author", user))
+                .updateMulti(Query.query(where("assigneeId").is(user.getId())), new Update().set("assignee", user))
+                // Пользователь встречается среди наблюдателей не более одного раза, поэтому хватает позиционного $
+                .updateMulti(Query.query(where("observers.id").is(user.getId())), new Update().set("observers.$", user))
+                .execute()
+                .map(BulkWriteResult::getModifiedCount)
+                .map(Integer::longValue);
+    }
+
+    @Override
+    public Mono<Boolean> saveIfNewer(TaskView view) {
+        // Если проекция с той же или более новой версией уже есть, фильтр её не находит, а upsert упирается в _id
+        return mongoTemplate.replace(olderThan(view), view, ReplaceOptions.replaceOptions().upsert())
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<Boolean> insertIfAbsent(TaskView view) {
+        return mongoTemplate.insert(view)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<Void> upsertAll(List<TaskView> views) {
+        if (views.isEmpty()) {
+            return Mono.empty();
+        }
+        ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TaskView.class);
+        for (TaskView view : views) {
+            operations.replaceOne(olderThan(view), view, FindAndReplaceOptions.options().upsert());
+        }
+        // Ошибки по _id означают, что в базе уже более новая проекция
+        return operations.execute()
+                .onErrorResume(error -> onlyDuplicateKeys(TaskRepositoryCustomImpl.bulkWriteException(error)),
+                        error -> Mono.empty())
+                .then();
+    }
+
+    // Проекция этой задачи с меньшей версией; проекции без версии остались от записей до её появления
+    private static Query olderThan(TaskView view) {
+        Criteria older = view.getVersion() != null
+                ? new Criteria().orOperator(where("version").lt(view.getVersion()), where("version").is(null))
+                : where("version").is(null);
+        return Query.query(new Criteria().andOperator(where("id").is(view.getId()), older));
+    }
+
+    private static boolean onlyDuplicateKeys(MongoBulkWriteException e) {
+        return e != null && e.getWriteConcernError() == null
+                && e.getWriteErrors().stream().allMatch(writeError -> writeError.getCode() == DUPLICATE_KEY);
+    }
+
+    @Override
+    public Mono<Long> deleteAllReferencing(String userId) {
+        Query query = Query.query(new Criteria().orOperator(
+                where("authorId").is(userId),
+                where("assigneeId").is(userId),
+                where("observerIds").is(userId)));
+        return mongoTemplate.remove(query, TaskView.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+}
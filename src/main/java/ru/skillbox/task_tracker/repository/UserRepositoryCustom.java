@@ -0,0 +1,11 @@
+package ru.skillbox.task_tracker.repository;
+
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.User;
+
+public interface UserRepositoryCustom {
+
+    // Заменяет пользователя, только если в базе он всё ещё совпадает с expected.
+    // Возвращает нового пользователя или пустой Mono, если его успели изменить
+    Mono<User> replaceIfUnchanged(User expected, User updated);
+}
@@ -0,0 +1,25 @@
+package ru.skillbox.task_tracker.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.User;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<User> replaceIfUnchanged(User expected, User updated) {
+        // Версии у пользователя нет, поэтому сравниваются все поля документа
+        Query query = Query.query(where("id").is(expected.getId())
+                .and("name").is(expected.getName())
+                .and("email").is(expected.getEmail()));
+        return mongoTemplate.findAndReplace(query, updated, FindAndReplaceOptions.options().returnNew());
+    }
+}
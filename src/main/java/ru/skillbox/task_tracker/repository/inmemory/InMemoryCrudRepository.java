@@ -0,0 +1,250 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.query.FluentQuery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Общая часть {@link ReactiveMongoRepository} поверх {@link InMemoryStore}. Операции выполняются при подписке,
+ * изменения - на {@link Schedulers#boundedElastic()}, наружу отдаются копии хранимых документов. Сортировка идёт по снимку всех документов в памяти,
+ * запросы по образцу (Example) не поддерживаются.
+ */
+public abstract class InMemoryCrudRepository<T> implements ReactiveMongoRepository<T, String> {
+
+    protected abstract String idOf(T entity);
+
+    // Копия хранимого документа или null
+    protected abstract T find(String id);
+
+    protected abstract Collection<T> all();
+
+    protected abstract long size();
+
+    // Записывает документ и заполняет в нём id и версию; insert - только если документа ещё нет
+    protected abstract void write(T entity, boolean insert);
+
+    // true, если документ был
+    protected abstract boolean remove(String id);
+
+    @Override
+    public <S extends T> Mono<S> save(S entity) {
+        return modifying(() -> {
+            write(entity, false);
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends T> Flux<S> saveAll(Publisher<S> entities) {
+        return Flux.from(entities).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends T> Mono<S> insert(S entity) {
+        return modifying(() -> {
+            write(entity, true);
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::insert);
+    }
+
+    @Override
+    public <S extends T> Flux<S> insert(Publisher<S> entities) {
+        return Flux.from(entities).concatMap(this::insert);
+    }
+
+    @Override
+    public Mono<T> findById(String id) {
+        return Mono.fromSupplier(() -> find(id));
+    }
+
+    @Override
+    public Mono<T> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return findById(id).hasElement();
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<T> findAll() {
+        return Flux.defer(() -> Flux.fromIterable(all()));
+    }
+
+    @Override
+    public Flux<T> findAll(Sort sort) {
+        if (sort.isUnsorted()) {
+            return findAll();
+        }
+        return Flux.defer(() -> Flux.fromIterable(all().stream().sorted(comparator(sort)).toList()));
+    }
+
+    @Override
+    public Flux<T> findAllById(Iterable<String> ids) {
+        return Flux.defer(() -> {
+            List<T> found = new ArrayList<>();
+            for (String id : ids) {
+                T entity = find(id);
+                if (entity != null) {
+                    found.add(entity);
+                }
+            }
+            return Flux.fromIterable(found);
+        });
+    }
+
+    @Override
+    public Flux<T> findAllById(Publisher<String> ids) {
+        return Flux.from(ids).concatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(this::size);
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return modifying(() -> remove(id)).then();
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(T entity) {
+        return deleteById(idOf(entity));
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(Iterable<? extends String> ids) {
+        return modifying(() -> {
+            ids.forEach(this::remove);
+            return null;
+        }).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+        return modifying(() -> {
+            entities.forEach(entity -> remove(idOf(entity)));
+            return null;
+        }).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends T> entities) {
+        return Flux.from(entities).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return modifying(() -> all().stream()
+                .map(this::idOf)
+                .filter(Objects::nonNull)
+                .filter(this::remove)
+                .count()).then();
+    }
+
+    @Override
+    public <S extends T> Mono<S> findOne(Example<S> example) {
+        return Mono.error(unsupportedExample());
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example) {
+        return Flux.error(unsupportedExample());
+    }
+
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example, Sort sort) {
+        return Flux.error(unsupportedExample());
+    }
+
+    @Override
+    public <S extends T> Mono<Long> count(Example<S> example) {
+        return Mono.error(unsupportedExample());
+    }
+
+    @Override
+    public <S extends T> Mono<Boolean> exists(Example<S> example) {
+        return Mono.error(unsupportedExample());
+    }
+
+    @Override
+    public <S extends T, R, P extends Publisher<R>> P findBy(Example<S> example,
+                                                           Function<FluentQuery.ReactiveFluentQuery<S>, P> queryFunction) {
+        throw unsupportedExample();
+    }
+
+    // Изменение может ждать, пока InMemoryStore пишет снимок на диск, поэтому выполняется не в потоке event loop
+    protected static <R> Mono<R> modifying(Callable<R> change) {
+        return Mono.fromCallable(change).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Порядок как у Mongo: отсутствующее поле или null меньше любого значения, _id - это свойство id
+    private static <T> Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<T> next = Comparator.comparing(entity -> sortKey(entity, order),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> sortKey(Object entity, Sort.Order order) {
+        String property = "_id".equals(order.getProperty()) ? "id" : order.getProperty();
+        BeanWrapper wrapper = new BeanWrapperImpl(entity);
+        Object value = wrapper.isReadableProperty(property) ? wrapper.getPropertyValue(property) : null;
+        if (value instanceof String string && order.isIgnoreCase()) {
+            value = string.toLowerCase(Locale.ROOT);
+        }
+        if (value != null && !(value instanceof Comparable)) {
+            throw new UnsupportedOperationException("Sorting by " + property + " is not supported in memory");
+        }
+        return (Comparable<Object>) value;
+    }
+
+    private static UnsupportedOperationException unsupportedExample() {
+        return new UnsupportedOperationException("Query by example is not supported in memory");
+    }
+}
@@ -0,0 +1,416 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.skillbox.task_tracker.config.InMemoryStoreProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.repository.TaskCursor;
+import ru.skillbox.task_tracker.repository.journal.WriteAheadLog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Хранилище профиля inmemory. Задачи и пользователи лежат в {@link ConcurrentHashMap}, для запросов
+ * репозиториев есть вторичные индексы с блокировками по полосам и упорядоченный по updatedAt индекс задач.
+ * <p>
+ * Каждое изменение дописывается в журнал ({@link WriteAheadLog}). Когда журнал заполняется и при остановке
+ * пишется снимок всех данных, после чего журнал начинается заново. При старте читается снимок
+ * и поверх него применяются записи журнала.
+ * <p>
+ * Хранимые объекты не изменяются: изменение заменяет объект целиком, а репозитории отдают наружу копии.
+ */
+@Component
+@Profile("inmemory")
+@Slf4j
+public class InMemoryStore implements DisposableBean {
+
+    private static final long SNAPSHOT_MAGIC = 0x5441534b534e4150L;
+    private static final byte END = 0;
+    private static final byte PUT_TASK = 1;
+    private static final byte DELETE_TASK = 2;
+    private static final byte PUT_USER = 3;
+    private static final byte DELETE_USER = 4;
+
+    private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final StripedIndex tasksByAuthor;
+    private final StripedIndex tasksByAssignee;
+    private final StripedIndex tasksByObserver;
+    private final StripedIndex tasksByStatus;
+    private final StripedIndex usersByName;
+    private final NavigableSet<TaskKey> tasksByUpdatedAt = new ConcurrentSkipListSet<>();
+
+    // Изменения одного документа идут строго по очереди, чтобы индексы и журнал видели их в одном порядке
+    private final Lock[] documentLocks;
+
+    private final InMemoryStoreProperties properties;
+    private final ObjectMapper json = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addMixIn(Task.class, StoredTask.class)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    // Доступ к журналу - только под монитором wal
+    private final Object walMonitor = new Object();
+    private WriteAheadLog wal;
+
+    public InMemoryStore(InMemoryStoreProperties properties) {
+        this.properties = properties;
+        int stripes = properties.getIndexStripes();
+        tasksByAuthor = new StripedIndex(stripes);
+        tasksByAssignee = new StripedIndex(stripes);
+        tasksByObserver = new StripedIndex(stripes);
+        tasksByStatus = new StripedIndex(stripes);
+        usersByName = new StripedIndex(stripes);
+        documentLocks = new Lock[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < documentLocks.length; i++) {
+            documentLocks[i] = new ReentrantLock();
+        }
+        if (properties.isPersistent()) {
+            recover();
+        }
+    }
+
+    public Task task(String id) {
+        return tasks.get(id);
+    }
+
+    public Collection<Task> tasks() {
+        return tasks.values();
+    }
+
+    public int taskCount() {
+        return tasks.size();
+    }
+
+    public Set<String> taskIdsByAuthor(String userId) {
+        return tasksByAuthor.get(userId);
+    }
+
+    public Set<String> taskIdsByAssignee(String userId) {
+        return tasksByAssignee.get(userId);
+    }
+
+    public Set<String> taskIdsByObserver(String userId) {
+        return tasksByObserver.get(userId);
+    }
+
+    public Set<String> taskIdsByStatus(String status) {
+        return tasksByStatus.get(status);
+    }
+
+    // Задачи по убыванию (updatedAt, id)
+    public NavigableSet<TaskKey> tasksByUpdatedAt() {
+        return tasksByUpdatedAt;
+    }
+
+    public User user(String id) {
+        return users.get(id);
+    }
+
+    public Collection<User> users() {
+        return users.values();
+    }
+
+    public int userCount() {
+        return users.size();
+    }
+
+    public Set<String> userIdsByName(String name) {
+        return usersByName.get(name);
+    }
+
+    /**
+     * Изменяет задачу под блокировкой её id. {@code change} получает хранимую задачу или null и возвращает
+     * новый объект, null для удаления или ту же задачу, если менять нечего. Возвращает прежнюю задачу.
+     */
+    public Task updateTask(String id, UnaryOperator<Task> change) {
+        Lock lock = lock(id);
+        lock.lock();
+        try {
+            Task previous = tasks.get(id);
+            Task next = change.apply(previous);
+            if (next == previous) {
+                return previous;
+            }
+            if (next == null) {
+                tasks.remove(id);
+                unindex(previous);
+                append(DELETE_TASK, id.getBytes(StandardCharsets.UTF_8));
+            } else {
+                tasks.put(id, next);
+                unindex(previous);
+                index(next);
+                append(PUT_TASK, write(next));
+            }
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // То же для пользователя
+    public User updateUser(String id, UnaryOperator<User> change) {
+        Lock lock = lock(id);
+        lock.lock();
+        try {
+            User previous = users.get(id);
+            User next = change.apply(previous);
+            if (next == previous) {
+                return previous;
+            }
+            if (next == null) {
+                users.remove(id);
+                unindex(previous);
+                append(DELETE_USER, id.getBytes(StandardCharsets.UTF_8));
+            } else {
+                users.put(id, next);
+                unindex(previous);
+                index(next);
+                append(PUT_USER, write(next));
+            }
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (walMonitor) {
+            if (wal != null) {
+                checkpointLocked();
+                wal.close();
+                wal = null;
+            }
+        }
+    }
+
+    private void index(Task task) {
+        if (task == null) {
+            return;
+        }
+        tasksByAuthor.add(task.getAuthorId(), task.getId());
+        tasksByAssignee.add(task.getAssigneeId(), task.getId());
+        if (task.getObserverIds() != null) {
+            task.getObserverIds().forEach(observerId -> tasksByObserver.add(observerId, task.getId()));
+        }
+        tasksByStatus.add(task.getStatus() != null ? task.getStatus().name() : null, task.getId());
+        tasksByUpdatedAt.add(TaskKey.of(task));
+    }
+
+    private void unindex(Task task) {
+        if (task == null) {
+            return;
+        }
+        tasksByAuthor.remove(task.getAuthorId(), task.getId());
+        tasksByAssignee.remove(task.getAssigneeId(), task.getId());
+        if (task.getObserverIds() != null) {
+            task.getObserverIds().forEach(observerId -> tasksByObserver.remove(observerId, task.getId()));
+        }
+        tasksByStatus.remove(task.getStatus() != null ? task.getStatus().name() : null, task.getId());
+        tasksByUpdatedAt.remove(TaskKey.of(task));
+    }
+
+    private void index(User user) {
+        if (user != null) {
+            usersByName.add(user.getName(), user.getId());
+        }
+    }
+
+    private void unindex(User user) {
+        if (user != null) {
+            usersByName.remove(user.getName(), user.getId());
+        }
+    }
+
+    private Lock lock(String id) {
+        int hash = id.hashCode();
+        return documentLocks[(hash ^ (hash >>> 16)) & (documentLocks.length - 1)];
+    }
+
+    private void append(byte operation, byte[] data) {
+        synchronized (walMonitor) {
+            if (wal == null) {
+                return;
+            }
+            if (!wal.fits(data.length)) {
+                throw new IllegalStateException("Document of " + data.length + " bytes does not fit into the write-ahead log");
+            }
+            if (!wal.append(operation, data)) {
+                // Изменение уже в памяти, поэтому попадёт в снимок; в новый журнал его писать не нужно
+                checkpointLocked();
+            }
+        }
+    }
+
+    // Изменения, ещё не дописанные в журнал, ждут монитора и попадут уже в журнал новой эпохи
+    private void checkpointLocked() {
+        long epoch = wal.epoch() + 1;
+        writeSnapshot(epoch);
+        wal.reset(epoch);
+    }
+
+    private void recover() {
+        Path dir = properties.getDataDir();
+        long started = System.nanoTime();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create data directory " + dir, e);
+        }
+        long snapshotEpoch = readSnapshot(dir.resolve("snapshot.dat"));
+        WriteAheadLog journal = new WriteAheadLog(dir.resolve("wal.log"), (int) properties.getWalSize().toBytes(),
+                properties.isForceOnWrite());
+        // Журнал старой эпохи уже целиком вошёл в снимок
+        if (journal.epoch() == snapshotEpoch) {
+            journal.replay(this::apply);
+        }
+        synchronized (walMonitor) {
+            wal = journal;
+            // Следующий старт прочитает только снимок
+            checkpointLocked();
+        }
+        log.info("Loaded {} users and {} tasks from {} in {} ms", users.size(), tasks.size(), dir,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private long readSnapshot(Path file) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getLong() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a snapshot file: " + file);
+            }
+            long epoch = buffer.getLong();
+            byte operation;
+            while ((operation = buffer.get()) != END) {
+                byte[] data = new byte[buffer.getInt()];
+                buffer.get(data);
+                apply(operation, data);
+            }
+            return epoch;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot " + file, e);
+        }
+    }
+
+    private void writeSnapshot(long epoch) {
+        Path dir = properties.getDataDir();
+        Path temporary = dir.resolve("snapshot.tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeLong(SNAPSHOT_MAGIC);
+            out.writeLong(epoch);
+            for (User user : users.values()) {
+                writeRecord(out, PUT_USER, write(user));
+            }
+            for (Task task : tasks.values()) {
+                writeRecord(out, PUT_TASK, write(task));
+            }
+            out.writeByte(END);
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot", e);
+        }
+        try {
+            Files.move(temporary, dir.resolve("snapshot.dat"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace snapshot", e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte operation, byte[] data) throws IOException {
+        out.writeByte(operation);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    // Применяет запись снимка или журнала без повторной записи в журнал
+    private void apply(byte operation, byte[] data) {
+        try {
+            switch (operation) {
+                case PUT_TASK -> {
+                    Task task = json.readValue(data, Task.class);
+                    unindex(tasks.put(task.getId(), task));
+                    index(task);
+                }
+                case DELETE_TASK -> unindex(tasks.remove(new String(data, StandardCharsets.UTF_8)));
+                case PUT_USER -> {
+                    User user = json.readValue(data, User.class);
+                    unindex(users.put(user.getId(), user));
+                    index(user);
+                }
+                case DELETE_USER -> unindex(users.remove(new String(data, StandardCharsets.UTF_8)));
+                default -> throw new IllegalStateException("Unknown store operation: " + operation);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read stored document", e);
+        }
+    }
+
+    private byte[] write(Object document) {
+        try {
+            return json.writeValueAsBytes(document);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize document", e);
+        }
+    }
+
+    // Ключ упорядоченного индекса: сначала более новые задачи, при равном updatedAt - больший id
+    public record TaskKey(Instant updatedAt, String id) implements Comparable<TaskKey> {
+
+        static TaskKey of(Task task) {
+            return new TaskKey(task.getUpdatedAt() != null ? task.getUpdatedAt() : Instant.EPOCH, task.getId());
+        }
+
+        static TaskKey of(TaskCursor cursor) {
+            return new TaskKey(cursor.getUpdatedAt() != null ? cursor.getUpdatedAt() : Instant.EPOCH, cursor.getId());
+        }
+
+        @Override
+        public int compareTo(TaskKey other) {
+            int byTime = other.updatedAt.compareTo(updatedAt);
+            return byTime != 0 ? byTime : other.id.compareTo(id);
+        }
+    }
+
+    // Вложенные пользователи и релевантность поиска не хранятся, как и в Mongo
+    @JsonIgnoreProperties({"author", "assignee", "observers", "score"})
+    private abstract static class StoredTask {
+    }
+}
@@ -0,0 +1,553 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonValue;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.repository.TaskCursor;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.repository.inmemory.InMemoryStore.TaskKey;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@link TaskRepository} профиля inmemory. Запросы по автору, исполнителю, наблюдателю и статусу идут
+ * через вторичные индексы {@link InMemoryStore}, страницы - по индексу (updatedAt, id).
+ * Id из индекса всегда перепроверяются по самой задаче: между чтением индекса и задачи её могли изменить.
+ */
+@Repository
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class InMemoryTaskRepository extends InMemoryCrudRepository<Task> implements TaskRepository {
+
+    // Веса полей как у текстового индекса task_text
+    private static final float NAME_WEIGHT = 10F;
+    private static final float DESCRIPTION_WEIGHT = 2F;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private final InMemoryStore store;
+    private final TaskMapper taskMapper;
+
+    @Override
+    protected String idOf(Task task) {
+        return task.getId();
+    }
+
+    @Override
+    protected Task find(String id) {
+        return id != null ? copy(store.task(id)) : null;
+    }
+
+    @Override
+    protected Collection<Task> all() {
+        return store.tasks().stream().map(this::copy).toList();
+    }
+
+    @Override
+    protected long size() {
+        return store.taskCount();
+    }
+
+    @Override
+    protected void write(Task task, boolean insert) {
+        if (task.getId() == null) {
+            task.setId(UUID.randomUUID().toString());
+        }
+        // Та же семантика @Version, что у MongoTemplate: без версии - вставка, с версией - замена этой версии
+        store.updateTask(task.getId(), previous -> {
+            if (insert || task.getVersion() == null) {
+                if (previous != null) {
+                    throw new DuplicateKeyException("Task already exists with id: " + task.getId());
+                }
+                if (task.getVersion() == null) {
+                    task.setVersion(0L);
+                }
+            } else {
+                if (previous == null || !task.getVersion().equals(previous.getVersion())) {
+                    throw new OptimisticLockingFailureException("Task " + task.getId() + " with version "
+                            + task.getVersion() + " was modified or deleted");
+                }
+                task.setVersion(task.getVersion() + 1);
+            }
+            return stored(task);
+        });
+    }
+
+    @Override
+    protected boolean remove(String id) {
+        return store.updateTask(id, previous -> null) != null;
+    }
+
+    @Override
+    public Flux<Task> findByAssigneeId(String assigneeId) {
+        return findAllByAssigneeId(assigneeId);
+    }
+
+    @Override
+    public Flux<Task> findAllByAuthorId(String authorId) {
+        return Flux.defer(() -> Flux.fromIterable(
+                byIds(store.taskIdsByAuthor(authorId), task -> authorId.equals(task.getAuthorId()))));
+    }
+
+    @Override
+    public Flux<Task> findAllByAssigneeId(String assigneeId) {
+        return Flux.defer(() -> Flux.fromIterable(
+                byIds(store.taskIdsByAssignee(assigneeId), task -> assigneeId.equals(task.getAssigneeId()))));
+    }
+
+    @Override
+    public Flux<Task> findAllByObserverIdsContaining(String observerId) {
+        return Flux.defer(() -> Flux.fromIterable(
+                byIds(store.taskIdsByObserver(observerId), task -> observes(task, observerId))));
+    }
+
+    @Override
+    public Flux<ChangeStreamEvent<Task>> watch(BsonValue resumeToken) {
+        // Change stream есть только у Mongo: общий поток ленты просто не получает событий,
+        // а продолжение с токена завершается ошибкой, и клиент получает RESET
+        return resumeToken == null
+                ? Flux.never()
+                : Flux.error(new UnsupportedOperationException("Change streams are not supported in memory"));
+    }
+
+    @Override
+    public Flux<Task> findArchivable(Instant cutoff, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(
+                byIds(store.taskIdsByStatus(TaskStatus.DONE.name()), task -> archivable(task, cutoff)).stream()
+                        .sorted(Comparator.comparing(Task::getUpdatedAt).thenComparing(Task::getId))
+                        .limit(limit)
+                        .toList()));
+    }
+
+    @Override
+    public Mono<Long> deleteArchived(Collection<String> ids, Instant cutoff) {
+        return modifying(() -> ids.stream()
+                .filter(id -> deleteIf(id, task -> archivable(task, cutoff)))
+                .count());
+    }
+
+    @Override
+    public Mono<Task> findVersion(String id) {
+        return findById(id);
+    }
+
+    @Override
+    public Mono<Task> findOne(String id, TaskProjection projection) {
+        return findById(id).map(projection::project);
+    }
+
+    @Override
+    public Flux<Task> findPage(TaskFilter filter, TaskCursor after, int limit, TaskProjection projection) {
+        return Flux.defer(() -> {
+            Set<String> candidates = filter.getAssigneeId() != null ? store.taskIdsByAssignee(filter.getAssigneeId())
+                    : filter.getAuthorId() != null ? store.taskIdsByAuthor(filter.getAuthorId())
+                    : null;
+            List<Task> page = new ArrayList<>(limit);
+            if (candidates != null) {
+                // Задач одного пользователя немного: они отбираются по индексу и сортируются
+                byIds(candidates, task -> matches(task, filter) && before(task, after)).stream()
+                        .sorted(Comparator.comparing(TaskKey::of))
+                        .limit(limit)
+                        .forEach(page::add);
+            } else {
+                Collection<TaskKey> keys = after != null
+                        ? store.tasksByUpdatedAt().tailSet(TaskKey.of(after), false)
+                        : store.tasksByUpdatedAt();
+                for (TaskKey key : keys) {
+                    if (page.size() == limit) {
+                        break;
+                    }
+                    Task task = store.task(key.id());
+                    // Задачу могли изменить после чтения ключа: тогда она встретится под новым ключом
+                    if (task != null && key.equals(TaskKey.of(task)) && matches(task, filter)) {
+                        page.add(copy(task));
+                    }
+                }
+            }
+            return Flux.fromIterable(page).map(projection::project);
+        });
+    }
+
+    @Override
+    public Flux<Task> search(String text, TaskFilter filter, int skip, int limit, TaskProjection projection) {
+        return Flux.defer(() -> {
+            Set<String> terms = terms(text);
+            Map<Task, Float> scores = new HashMap<>();
+            for (Task task : store.tasks()) {
+                if (!matches(task, filter)) {
+                    continue;
+                }
+                float score = score(task.getName(), terms, NAME_WEIGHT) + score(task.getDescription(), terms, DESCRIPTION_WEIGHT);
+                if (score > 0) {
+                    scores.put(task, score);
+                }
+            }
+            return Flux.fromStream(scores.entrySet().stream()
+                    .sorted(Map.Entry.<Task, Float>comparingByValue().reversed()
+                            .thenComparing(entry -> entry.getKey().getId()))
+                    .skip(skip)
+                    .limit(limit)
+                    .map(entry -> {
+                        Task task = projection.project(copy(entry.getKey()));
+                        task.setScore(entry.getValue());
+                        return task;
+                    }));
+        });
+    }
+
+    @Override
+    public Flux<Task> findAll(TaskProjection projection) {
+        return findAll().map(projection::project);
+    }
+
+    @Override
+    public Mono<Task> findOneWithUsers(String id) {
+        return findById(id).map(this::withUsers);
+    }
+
+    @Override
+    public Flux<Task> findAllWithUsers() {
+        return findAll().map(this::withUsers);
+    }
+
+    // Аналог $lookup: отсутствующий пользователь остаётся null, отсутствующие наблюдатели пропускаются
+    private Task withUsers(Task task) {
+        task.setAuthor(user(task.getAuthorId()));
+        task.setAssignee(user(task.getAssigneeId()));
+        Set<User> observers = new HashSet<>();
+        if (task.getObserverIds() != null) {
+            task.getObserverIds().stream()
+                    .map(this::user)
+                    .filter(Objects::nonNull)
+                    .forEach(observers::add);
+        }
+        task.setObservers(observers);
+        return task;
+    }
+
+    private User user(String id) {
+        User user = id != null ? store.user(id) : null;
+        return user != null ? new User(user.getId(), user.getName(), user.getEmail()) : null;
+    }
+
+    @Override
+    public Flux<Task> findRefs(Collection<String> ids) {
+        return findAllById(ids);
+    }
+
+    @Override
+    public Flux<String> findUserIdsSharingTasks(String userId) {
+        return Flux.defer(() -> Flux.fromIterable(referencing(userId, true)))
+                .flatMapIterable(task -> Stream.of(task.getAuthorId(), task.getAssigneeId())
+                        .filter(Objects::nonNull)
+                        .toList())
+                .distinct();
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertAll(List<Task> tasks) {
+        return modifying(() -> {
+            Map<Integer, String> failures = new HashMap<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                task.setVersion(0L);
+                try {
+                    write(task, true);
+                } catch (DuplicateKeyException e) {
+                    failures.put(i, e.getMessage());
+                }
+            }
+            return failures;
+        });
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> updateAll(List<Task> patches) {
+        return modifying(() -> {
+            // Как у updateOne: патч к несуществующей задаче ничего не делает и ошибкой не считается
+            patches.forEach(patch -> store.updateTask(patch.getId(), task -> task != null ? patched(task, patch) : null));
+            return Map.of();
+        });
+    }
+
+    @Override
+    public Mono<Set<String>> writeAll(List<Task> inserts, List<Task> patches, List<Long> baseVersions) {
+        return modifying(() -> {
+            Set<String> failed = new HashSet<>();
+            for (Task task : inserts) {
+                try {
+                    write(task, true);
+                } catch (DuplicateKeyException e) {
+                    failed.add(task.getId());
+                }
+            }
+            for (int i = 0; i < patches.size(); i++) {
+                Task patch = patches.get(i);
+                Long baseVersion = baseVersions.get(i);
+                AtomicBoolean written = new AtomicBoolean();
+                store.updateTask(patch.getId(), task -> {
+                    if (task == null || !baseVersion.equals(task.getVersion())) {
+                        return task;
+                    }
+                    written.set(true);
+                    Task patched = patched(task, patch);
+                    patched.setVersion(patch.getVersion());
+                    return patched;
+                });
+                if (!written.get()) {
+                    failed.add(patch.getId());
+                }
+            }
+            return failed;
+        });
+    }
+
+    @Override
+    public Mono<Task> updateFields(String id, Task patch, Long expectedVersion) {
+        return modifying(() -> {
+            AtomicBoolean updated = new AtomicBoolean();
+            Task previous = store.updateTask(id, task -> {
+                if (task == null || expectedVersion != null && !expectedVersion.equals(task.getVersion())) {
+                    return task;
+                }
+                updated.set(true);
+                return patched(task, patch);
+            });
+            return updated.get() ? copy(previous) : null;
+        });
+    }
+
+    @Override
+    public Mono<Task> addObservers(String taskId, Collection<String> observerIds) {
+        return modifying(() -> modify(taskId, task -> task.getObserverIds().addAll(observerIds)));
+    }
+
+    @Override
+    public Mono<Task> removeObserver(String taskId, String observerId) {
+        return modifying(() -> modify(taskId, task -> task.getObserverIds().remove(observerId)));
+    }
+
+    @Override
+    public Mono<Task> deleteAndReturn(String id, Long expectedVersion) {
+        return modifying(() -> deleted(id, task -> expectedVersion == null || expectedVersion.equals(task.getVersion())));
+    }
+
+    @Override
+    public Flux<Task> deleteAllAndReturn(Collection<String> ids) {
+        return modifying(() -> new LinkedHashSet<>(ids).stream()
+                .map(id -> deleted(id, task -> true))
+                .filter(Objects::nonNull)
+                .toList())
+                .flatMapIterable(deleted -> deleted);
+    }
+
+    @Override
+    public Mono<Long> deleteAllReferencing(String userId) {
+        return modifying(() -> referencingIds(userId, true).stream()
+                .filter(id -> deleteIf(id, task -> references(task, userId, true)))
+                .count());
+    }
+
+    @Override
+    public Mono<Long> deleteAllAuthoredOrAssigned(String userId) {
+        return modifying(() -> referencingIds(userId, false).stream()
+                .filter(id -> deleteIf(id, task -> references(task, userId, false)))
+                .count());
+    }
+
+    @Override
+    public Mono<Long> reassign(String fromUserId, String toUserId) {
+        return modifying(() -> {
+            Instant now = Instant.now();
+            long modified = 0;
+            for (String id : referencingIds(fromUserId, false)) {
+                Task previous = store.updateTask(id, task -> {
+                    if (task == null || !references(task, fromUserId, false)) {
+                        return task;
+                    }
+                    Task reassigned = copy(task);
+                    if (fromUserId.equals(reassigned.getAuthorId())) {
+                        reassigned.setAuthorId(toUserId);
+                    }
+                    if (fromUserId.equals(reassigned.getAssigneeId())) {
+                        reassigned.setAssigneeId(toUserId);
+                    }
+                    reassigned.setUpdatedAt(now);
+                    reassigned.setVersion(reassigned.getVersion() + 1);
+                    return stored(reassigned);
+                });
+                if (previous != null && references(previous, fromUserId, false)) {
+                    modified++;
+                }
+            }
+            return modified;
+        });
+    }
+
+    @Override
+    public Mono<Long> removeObserverEverywhere(String userId) {
+        return modifying(() -> store.taskIdsByObserver(userId).stream()
+                .filter(id -> modify(id, task -> task.getObserverIds().remove(userId)) != null)
+                .count());
+    }
+
+    static boolean matches(Task task, TaskFilter filter) {
+        return (filter.getStatus() == null || filter.getStatus() == task.getStatus())
+                && (filter.getAssigneeId() == null || filter.getAssigneeId().equals(task.getAssigneeId()))
+                && (filter.getAuthorId() == null || filter.getAuthorId().equals(task.getAuthorId()));
+    }
+
+    // Задача в индексе (updatedAt, id) строго после курсора
+    private static boolean before(Task task, TaskCursor after) {
+        return after == null
+                || TaskKey.of(task).compareTo(TaskKey.of(after)) > 0;
+    }
+
+    private static boolean archivable(Task task, Instant cutoff) {
+        return task.getStatus() == TaskStatus.DONE && task.getUpdatedAt() != null && task.getUpdatedAt().isBefore(cutoff);
+    }
+
+    private static boolean observes(Task task, String userId) {
+        return task.getObserverIds() != null && task.getObserverIds().contains(userId);
+    }
+
+    private static boolean references(Task task, String userId, boolean withObservers) {
+        return userId.equals(task.getAuthorId()) || userId.equals(task.getAssigneeId())
+                || withObservers && observes(task, userId);
+    }
+
+    private Set<String> referencingIds(String userId, boolean withObservers) {
+        Set<String> ids = new HashSet<>(store.taskIdsByAuthor(userId));
+        ids.addAll(store.taskIdsByAssignee(userId));
+        if (withObservers) {
+            ids.addAll(store.taskIdsByObserver(userId));
+        }
+        return ids;
+    }
+
+    private List<Task> referencing(String userId, boolean withObservers) {
+        return byIds(referencingIds(userId, withObservers), task -> references(task, userId, withObservers));
+    }
+
+    // Копии задач из индекса, которые всё ещё подходят под условие
+    private List<Task> byIds(Set<String> ids, Predicate<Task> condition) {
+        List<Task> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Task task = store.task(id);
+            if (task != null && condition.test(task)) {
+                found.add(copy(task));
+            }
+        }
+        return found;
+    }
+
+    private boolean deleteIf(String id, Predicate<Task> condition) {
+        Task previous = store.updateTask(id, task -> task != null && condition.test(task) ? null : task);
+        return previous != null && condition.test(previous);
+    }
+
+    // Удаляет задачу, если она подходит под условие; возвращает копию удалённой задачи или null
+    private Task deleted(String id, Predicate<Task> condition) {
+        AtomicBoolean deleted = new AtomicBoolean();
+        Task previous = store.updateTask(id, task -> {
+            if (task == null || !condition.test(task)) {
+                return task;
+            }
+            deleted.set(true);
+            return null;
+        });
+        return deleted.get() ? copy(previous) : null;
+    }
+
+    // Изменяет копию задачи, обновляет updatedAt и версию; возвращает копию новой задачи или null, если задачи нет
+    private Task modify(String id, Consumer<Task> change) {
+        Task[] updated = new Task[1];
+        store.updateTask(id, task -> {
+            if (task == null) {
+                return null;
+            }
+            Task modified = copy(task);
+            change.accept(modified);
+            modified.setUpdatedAt(Instant.now());
+            modified.setVersion(modified.getVersion() + 1);
+            updated[0] = stored(modified);
+            return updated[0];
+        });
+        return copy(updated[0]);
+    }
+
+    private Task patched(Task task, Task patch) {
+        Task patched = copy(task);
+        taskMapper.applyPatch(patch, patched);
+        patched.setVersion(task.getVersion() + 1);
+        return stored(patched);
+    }
+
+    private static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static float score(String field, Set<String> terms, float weight) {
+        if (field == null) {
+            return 0;
+        }
+        int matched = 0;
+        for (String word : WORD_SEPARATOR.split(field.toLowerCase(Locale.ROOT))) {
+            if (terms.contains(word)) {
+                matched++;
+            }
+        }
+        return matched * weight;
+    }
+
+    private Task copy(Task task) {
+        return task != null ? taskMapper.copy(task) : null;
+    }
+
+    // Хранимая копия без пользователей и релевантности
+    private Task stored(Task task) {
+        Task stored = taskMapper.copy(task);
+        stored.setAuthor(null);
+        stored.setAssignee(null);
+        stored.setObservers(new HashSet<>());
+        stored.setScore(null);
+        if (stored.getObserverIds() == null) {
+            stored.setObserverIds(new LinkedHashSet<>());
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,91 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.repository.UserRepository;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// UserRepository профиля inmemory; поиск по имени идёт через индекс InMemoryStore
+@Repository
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class InMemoryUserRepository extends InMemoryCrudRepository<User> implements UserRepository {
+
+    private final InMemoryStore store;
+
+    @Override
+    protected String idOf(User user) {
+        return user.getId();
+    }
+
+    @Override
+    protected User find(String id) {
+        return id != null ? copy(store.user(id)) : null;
+    }
+
+    @Override
+    protected Collection<User> all() {
+        return store.users().stream().map(this::copy).toList();
+    }
+
+    @Override
+    protected long size() {
+        return store.userCount();
+    }
+
+    @Override
+    protected void write(User user, boolean insert) {
+        if (user.getId() == null) {
+            user.setId(UUID.randomUUID().toString());
+        }
+        User stored = copy(user);
+        store.updateUser(user.getId(), previous -> {
+            if (insert && previous != null) {
+                throw new DuplicateKeyException("User already exists with id: " + user.getId());
+            }
+            return stored;
+        });
+    }
+
+    @Override
+    protected boolean remove(String id) {
+        return store.updateUser(id, previous -> null) != null;
+    }
+
+    @Override
+    public Mono<User> findByName(String name) {
+        return Mono.fromSupplier(() -> store.userIdsByName(name).stream()
+                .map(store::user)
+                .filter(user -> user != null && name.equals(user.getName()))
+                .findFirst()
+                .map(this::copy)
+                .orElse(null));
+    }
+
+    @Override
+    public Mono<User> replaceIfUnchanged(User expected, User updated) {
+        return modifying(() -> {
+            User stored = copy(updated);
+            AtomicBoolean replaced = new AtomicBoolean();
+            store.updateUser(expected.getId(), user -> {
+                if (user == null || !user.equals(expected)) {
+                    return user;
+                }
+                replaced.set(true);
+                return stored;
+            });
+            return replaced.get() ? copy(stored) : null;
+        });
+    }
+
+    private User copy(User user) {
+        return user != null ? new User(user.getId(), user.getName(), user.getEmail()) : null;
+    }
+}
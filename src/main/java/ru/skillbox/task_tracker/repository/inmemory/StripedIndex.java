@@ -0,0 +1,90 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Вторичный индекс: значение поля -> id документов. Ключи разбиты на полосы, у каждой полосы своя
+ * блокировка, поэтому изменения разных ключей не мешают друг другу, а чтения одной полосы идут параллельно.
+ */
+final class StripedIndex {
+
+    private final ReadWriteLock[] locks;
+    private final Map<String, Set<String>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    StripedIndex(int stripeCount) {
+        // Степень двойки, чтобы полоса выбиралась маской
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        locks = new ReadWriteLock[size];
+        stripes = new Map[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+            stripes[i] = new HashMap<>();
+        }
+    }
+
+    void add(String key, String id) {
+        if (key == null) {
+            return;
+        }
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            stripes[stripe].computeIfAbsent(key, k -> new HashSet<>()).add(id);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    void remove(String key, String id) {
+        if (key == null) {
+            return;
+        }
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            Set<String> ids = stripes[stripe].get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                stripes[stripe].remove(key);
+            }
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    // Копия множества id, её можно обходить без блокировки
+    Set<String> get(String key) {
+        if (key == null) {
+            return Set.of();
+        }
+        int stripe = stripe(key);
+        locks[stripe].readLock().lock();
+        try {
+            Set<String> ids = stripes[stripe].get(key);
+            return ids != null ? Set.copyOf(ids) : Set.of();
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].writeLock().lock();
+            try {
+                stripes[i].clear();
+            } finally {
+                locks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    private int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
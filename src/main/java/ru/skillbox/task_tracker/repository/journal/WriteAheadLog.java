@@ -0,0 +1,178 @@
+package ru.skillbox.task_tracker.repository.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений в отображённом в память файле фиксированного размера.
+ * <p>
+ * Заголовок файла - номер эпохи (long). Запись: длина (int), эпоха (long), CRC32 (int), тип операции (byte)
+ * и данные. Когда журнал начинается заново, эпоха увеличивается, поэтому хвост прошлой эпохи за последней
+ * записью при чтении отбрасывается, как и запись, оборванная на середине (не сходится CRC).
+ * Журнал с новыми записями можно подменить целиком через {@link #rewrite}: до переименования временного файла
+ * после падения читается прежний журнал.
+ * Не потокобезопасен: вызывающий код сам упорядочивает записи.
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_SIZE = Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path file;
+    private final int size;
+    private final boolean forceOnWrite;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long epoch;
+
+    public WriteAheadLog(Path file, int size, boolean forceOnWrite) {
+        this.file = file;
+        this.size = Math.max(size, HEADER_SIZE + RECORD_HEADER_SIZE);
+        this.forceOnWrite = forceOnWrite;
+        open();
+        this.epoch = buffer.getLong(0);
+        buffer.position(HEADER_SIZE);
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    // Передаёт записи текущей эпохи по порядку и ставит позицию записи после последней из них
+    public void replay(BiConsumer<Byte, byte[]> consumer) {
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getLong(position + Integer.BYTES) != epoch) {
+                break;
+            }
+            byte[] record = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, record);
+            if (crc(epoch, record) != buffer.getInt(position + Integer.BYTES + Long.BYTES)) {
+                break;
+            }
+            consumer.accept(record[0], Arrays.copyOfRange(record, 1, record.length));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        buffer.position(position);
+    }
+
+    // false - в журнале нет места, нужен новый снимок
+    public boolean append(byte operation, byte[] data) {
+        int length = data.length + 1;
+        int position = buffer.position();
+        if (position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return false;
+        }
+        byte[] record = new byte[length];
+        record[0] = operation;
+        System.arraycopy(data, 0, record, 1, data.length);
+        // Длина пишется последней: до этого момента запись при чтении не видна
+        buffer.putLong(position + Integer.BYTES, epoch);
+        buffer.putInt(position + Integer.BYTES + Long.BYTES, crc(epoch, record));
+        buffer.put(position + RECORD_HEADER_SIZE, record);
+        buffer.putInt(position, length);
+        buffer.position(position + RECORD_HEADER_SIZE + length);
+        if (forceOnWrite) {
+            buffer.force(position, RECORD_HEADER_SIZE + length);
+        }
+        return true;
+    }
+
+    public boolean fits(int dataLength) {
+        return HEADER_SIZE + RECORD_HEADER_SIZE + dataLength + 1 <= buffer.capacity();
+    }
+
+    // Начинает журнал заново с новой эпохой; вызывается после записи снимка этой эпохи
+    public void reset(long newEpoch) {
+        epoch = newEpoch;
+        buffer.putInt(HEADER_SIZE, 0);
+        buffer.putLong(0, newEpoch);
+        buffer.position(HEADER_SIZE);
+        buffer.force();
+    }
+
+    /**
+     * Заменяет журнал новой эпохой, в которой только переданные записи. Записи пишутся во временный файл
+     * и сбрасываются на диск, затем файл атомарно переименовывается поверх журнала. false - записи не
+     * помещаются в журнал, он остаётся прежним.
+     */
+    public boolean rewrite(long newEpoch, byte operation, List<byte[]> records) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int position = HEADER_SIZE;
+        try {
+            Files.deleteIfExists(temporary);
+            try (WriteAheadLog next = new WriteAheadLog(temporary, size, false)) {
+                next.reset(newEpoch);
+                for (byte[] record : records) {
+                    if (!next.append(operation, record)) {
+                        position = -1;
+                        break;
+                    }
+                }
+                if (position != -1) {
+                    position = next.buffer.position();
+                }
+            }
+            if (position == -1) {
+                Files.delete(temporary);
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + temporary, e);
+        }
+        int previousPosition = buffer.position();
+        try {
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Прежний файл не тронут, журнал продолжает писаться в него
+            open();
+            buffer.position(previousPosition);
+            throw new UncheckedIOException("Failed to replace write-ahead log " + file, e);
+        }
+        open();
+        epoch = newEpoch;
+        buffer.position(position);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void open() {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open write-ahead log " + file, e);
+        }
+    }
+
+    private static int crc(long epoch, byte[] record) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (epoch >>> shift));
+        }
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,21 @@
+package ru.skillbox.task_tracker.service;
+
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+
+public interface TaskArchiveService {
+
+    // Переносит старые выполненные задачи в архив, возвращает число перенесённых
+    Mono<Long> archive();
+
+    Mono<TaskResponse> findById(String id, TaskProjection projection);
+
+    Mono<TaskPageResponse> findPage(TaskFilter filter, String cursor, int limit, TaskProjection projection);
+
+    // Убирает удаляемого пользователя из архивных задач по той же политике, что и из tasks
+    Mono<Void> deleteUserReferences(String userId, UserDeletePolicy policy, String reassignTo);
+}
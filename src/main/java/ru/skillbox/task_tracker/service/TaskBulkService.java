@@ -0,0 +1,17 @@
+package ru.skillbox.task_tracker.service;
+
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.web.model.BulkItemResult;
+import ru.skillbox.task_tracker.web.model.TaskBulkUpdateRequest;
+import ru.skillbox.task_tracker.web.model.TaskRequest;
+
+import java.util.List;
+
+public interface TaskBulkService {
+
+    Mono<List<BulkItemResult>> createAll(List<TaskRequest> tasks);
+
+    Mono<List<BulkItemResult>> updateAll(List<TaskBulkUpdateRequest> tasks);
+
+    Mono<List<BulkItemResult>> deleteAll(List<String> ids);
+}
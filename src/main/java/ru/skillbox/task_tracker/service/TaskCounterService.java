@@ -0,0 +1,24 @@
+package ru.skillbox.task_tracker.service;
+
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.web.model.TaskSummaryResponse;
+
+import java.util.Collection;
+
+public interface TaskCounterService {
+
+    Mono<TaskSummaryResponse> getSummary(String userId);
+
+    Mono<Void> created(Collection<Task> tasks);
+
+    Mono<Void> updated(Task previous, Task updated);
+
+    Mono<Void> deleted(Collection<Task> tasks);
+
+    Mono<Void> rebuild(Collection<String> userIds);
+
+    Mono<Void> rebuildAll();
+
+    Mono<Void> deleteByUserId(String userId);
+}
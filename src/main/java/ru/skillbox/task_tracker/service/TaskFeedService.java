@@ -0,0 +1,11 @@
+package ru.skillbox.task_tracker.service;
+
+import reactor.core.publisher.Flux;
+import ru.skillbox.task_tracker.web.model.TaskFeedEvent;
+import ru.skillbox.task_tracker.web.model.TaskFeedFilter;
+
+public interface TaskFeedService {
+
+    // lastEventId - id последнего полученного клиентом события, лента продолжается после него
+    Flux<TaskFeedEvent> subscribe(TaskFeedFilter filter, String lastEventId);
+}
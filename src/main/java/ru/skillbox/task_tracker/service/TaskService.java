@@ -2,20 +2,38 @@ package ru.skillbox.task_tracker.service;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.web.model.TaskExportResponse;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
 import ru.skillbox.task_tracker.web.model.TaskRequest;
 import ru.skillbox.task_tracker.web.model.TaskResponse;
 
+import java.util.Set;
+
 public interface TaskService {
 
     Flux<TaskResponse> findAll();
 
-    Mono<TaskResponse> findById(String id);
+    Mono<TaskPageResponse> findPage(TaskFilter filter, String cursor, int limit, TaskProjection projection);
+
+    Mono<TaskPageResponse> search(String query, TaskFilter filter, String cursor, int limit, TaskProjection projection);
+
+    Flux<TaskExportResponse> export(TaskProjection projection);
+
+    Mono<TaskResponse> findById(String id, TaskProjection projection);
+
+    Mono<String> findETag(String id, TaskProjection projection);
 
     Mono<TaskResponse> create(TaskRequest task);
 
     Mono<TaskResponse> update(String id, TaskRequest updatedTask);
 
-    Mono<Void> deleteById(String id);
+    Mono<Void> deleteById(String id, Long expectedVersion);
 
     Mono<TaskResponse> addObserver(String id, String observerId);
+
+    Mono<TaskResponse> addObservers(String id, Set<String> observerIds);
+
+    Mono<TaskResponse> removeObserver(String id, String observerId);
 }
@@ -0,0 +1,30 @@
+package ru.skillbox.task_tracker.service;
+
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TaskViewService {
+
+    Mono<TaskResponse> findById(String id);
+
+    // Более новая проекция, записанная параллельным изменением, не перезаписывается
+    Mono<TaskResponse> save(Task task);
+
+    // Только создаёт отсутствующую проекцию: для построения проекции при чтении
+    Mono<TaskResponse> saveIfAbsent(Task task);
+
+    Mono<Void> saveAll(List<Task> tasks);
+
+    Mono<Void> deleteById(String id);
+
+    Mono<Void> deleteAllById(Collection<String> ids);
+
+    Mono<Long> deleteAllReferencing(String userId);
+
+    void refreshUserInBackground(User user);
+}
@@ -4,6 +4,8 @@ import org.springframework.http.ResponseEntity;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+import ru.skillbox.task_tracker.web.model.UserDeletionJob;
 import ru.skillbox.task_tracker.web.model.UserRequest;
 import ru.skillbox.task_tracker.web.model.UserResponse;
 
@@ -17,9 +19,12 @@ public interface UserService {
 
     Mono<UserResponse> create(UserRequest user);
 
-    Mono<UserResponse> update(String id, UserRequest updatedUser);
+    // ifMatch - значение If-Match; если задано, пользователь меняется, только пока его ETag совпадает
+    Mono<UserResponse> update(String id, UserRequest updatedUser, String ifMatch);
 
-    Mono<Void> deleteById(String id);
+    Mono<UserDeletionJob> deleteById(String id, UserDeletePolicy policy, String reassignTo, String ifMatch);
+
+    Mono<UserDeletionJob> findDeletionJob(String jobId);
 
     Flux<User> findAllById(Set<String> observerIds);
 }
@@ -0,0 +1,40 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+
+import java.util.List;
+
+// В профиле inmemory все задачи остаются в памяти, архив всегда пуст
+@Service
+@Profile("inmemory")
+public class InMemoryTaskArchiveService implements TaskArchiveService {
+
+    @Override
+    public Mono<Long> archive() {
+        return Mono.just(0L);
+    }
+
+    @Override
+    public Mono<TaskResponse> findById(String id, TaskProjection projection) {
+        return Mono.error(new EntityNotFoundException("Archived task not found with id: " + id));
+    }
+
+    @Override
+    public Mono<TaskPageResponse> findPage(TaskFilter filter, String cursor, int limit, TaskProjection projection) {
+        return Mono.just(new TaskPageResponse(List.of(), null));
+    }
+
+    @Override
+    public Mono<Void> deleteUserReferences(String userId, UserDeletePolicy policy, String reassignTo) {
+        return Mono.empty();
+    }
+}
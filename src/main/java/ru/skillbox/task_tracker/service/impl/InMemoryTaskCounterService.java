@@ -0,0 +1,88 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskCounters;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.web.model.TaskSummaryResponse;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// В профиле inmemory сводка считается по индексам автора и исполнителя, отдельные счётчики не нужны
+@Service
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class InMemoryTaskCounterService implements TaskCounterService {
+
+    private final TaskRepository taskRepository;
+    private final UserCache userCache;
+
+    @Override
+    public Mono<TaskSummaryResponse> getSummary(String userId) {
+        return userCache.get(userId)
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("User not found with id: " + userId)))
+                .then(Mono.zip(countByStatus(taskRepository.findAllByAuthorId(userId)),
+                        countByStatus(taskRepository.findAllByAssigneeId(userId))))
+                .map(counters -> new TaskSummaryResponse(userId, counters.getT1(), counters.getT2(),
+                        total(counters.getT1()), total(counters.getT2())));
+    }
+
+    @Override
+    public Mono<Void> created(Collection<Task> tasks) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> updated(Task previous, Task updated) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> deleted(Collection<Task> tasks) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> rebuild(Collection<String> userIds) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> rebuildAll() {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> deleteByUserId(String userId) {
+        return Mono.empty();
+    }
+
+    // Тот же вид, что у TaskCounterServiceImpl: все статусы, в том числе с нулём
+    private Mono<Map<String, Long>> countByStatus(Flux<Task> tasks) {
+        return tasks.collect(Collectors.groupingBy(task -> TaskCounters.statusKey(task.getStatus()), Collectors.counting()))
+                .map(counters -> {
+                    Map<String, Long> result = new LinkedHashMap<>();
+                    for (TaskStatus status : TaskStatus.values()) {
+                        result.put(status.name(), counters.getOrDefault(status.name(), 0L));
+                    }
+                    if (counters.containsKey(TaskCounters.NO_STATUS)) {
+                        result.put(TaskCounters.NO_STATUS, counters.get(TaskCounters.NO_STATUS));
+                    }
+                    return result;
+                });
+    }
+
+    private long total(Map<String, Long> counters) {
+        return counters.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.util.Collection;
+import java.util.List;
+
+// В профиле inmemory проекции task_views не хранятся: задача и её пользователи и так читаются из памяти
+@Service
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class InMemoryTaskViewService implements TaskViewService {
+
+    private final TaskHydrator taskHydrator;
+
+    @Override
+    public Mono<TaskResponse> findById(String id) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<TaskResponse> save(Task task) {
+        return taskHydrator.hydrate(task);
+    }
+
+    @Override
+    public Mono<TaskResponse> saveIfAbsent(Task task) {
+        return taskHydrator.hydrate(task);
+    }
+
+    @Override
+    public Mono<Void> saveAll(List<Task> tasks) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(Collection<String> ids) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Long> deleteAllReferencing(String userId) {
+        return Mono.just(0L);
+    }
+
+    @Override
+    public void refreshUserInBackground(User user) {
+    }
+}
@@ -0,0 +1,157 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.TaskArchiveProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.exception.InvalidRequestException;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.repository.TaskArchiveRepository;
+import ru.skillbox.task_tracker.repository.TaskCursor;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Перенос выполненных задач в помесячные архивные коллекции. Задача сначала записывается в архив
+ * и только потом удаляется из tasks, поэтому сбой посередине оставляет копию, а не теряет задачу.
+ * Повторный запуск перезапишет такую копию.
+ */
+@Service
+@Profile("!inmemory")
+@Slf4j
+public class TaskArchiveServiceImpl implements TaskArchiveService {
+
+    // Страница целиком помещается в одно окно TaskHydrator с размером по умолчанию
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final TaskRepository taskRepository;
+    private final TaskArchiveRepository taskArchiveRepository;
+    private final TaskViewService taskViewService;
+    private final TaskCounterService taskCounterService;
+    private final TaskHydrator taskHydrator;
+    private final TaskMapper taskMapper;
+    private final TaskArchiveProperties properties;
+    private final TaskWriteBehindQueue taskWriteBehind;
+    private final Counter archivedTasks;
+
+    public TaskArchiveServiceImpl(TaskRepository taskRepository, TaskArchiveRepository taskArchiveRepository,
+                                  TaskViewService taskViewService, TaskCounterService taskCounterService,
+                                  TaskHydrator taskHydrator, TaskMapper taskMapper, TaskArchiveProperties properties,
+                                  TaskWriteBehindQueue taskWriteBehind, MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.taskArchiveRepository = taskArchiveRepository;
+        this.taskViewService = taskViewService;
+        this.taskCounterService = taskCounterService;
+        this.taskHydrator = taskHydrator;
+        this.taskMapper = taskMapper;
+        this.properties = properties;
+        this.taskWriteBehind = taskWriteBehind;
+        this.archivedTasks = Counter.builder("task.archive.archived")
+                .description("Done tasks moved from tasks to the monthly archive collections")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Long> archive() {
+        Instant cutoff = Instant.now().minus(properties.getAge());
+        // Следующая пачка читается, пока предыдущая была полной
+        return archiveBatch(cutoff)
+                .expand(batch -> batch.read() == properties.getBatchSize() ? archiveBatch(cutoff) : Mono.empty())
+                .reduce(0L, (total, batch) -> total + batch.archived());
+    }
+
+    @Override
+    public Mono<TaskResponse> findById(String id, TaskProjection projection) {
+        return taskArchiveRepository.findOne(id, projection)
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("Archived task not found with id: " + id)))
+                .flatMap(task -> toResponses(Flux.just(task), projection).next());
+    }
+
+    @Override
+    public Mono<TaskPageResponse> findPage(TaskFilter filter, String cursor, int limit, TaskProjection projection) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new InvalidRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        return Mono.fromCallable(() -> cursor != null ? Optional.of(TaskCursor.decode(cursor)) : Optional.<TaskCursor>empty())
+                .flatMap(after -> taskArchiveRepository.findPage(filter, after.orElse(null), limit + 1, projection)
+                        .collectList())
+                .flatMap(tasks -> {
+                    boolean hasNext = tasks.size() > limit;
+                    List<Task> page = hasNext ? tasks.subList(0, limit) : tasks;
+                    String nextCursor = hasNext ? TaskCursor.after(page.get(page.size() - 1)).encode() : null;
+                    return toResponses(Flux.fromIterable(page), projection)
+                            .collectList()
+                            .map(items -> new TaskPageResponse(items, nextCursor));
+                });
+    }
+
+    @Override
+    public Mono<Void> deleteUserReferences(String userId, UserDeletePolicy policy, String reassignTo) {
+        return switch (policy) {
+            case DELETE -> taskArchiveRepository.deleteAllReferencing(userId).then();
+            case UNLINK -> taskArchiveRepository.deleteAllAuthoredOrAssigned(userId)
+                    .then(taskArchiveRepository.removeObserverEverywhere(userId))
+                    .then();
+            case REASSIGN -> taskArchiveRepository.reassign(userId, reassignTo)
+                    .then(taskArchiveRepository.removeObserverEverywhere(userId))
+                    .then();
+        };
+    }
+
+    private Mono<Batch> archiveBatch(Instant cutoff) {
+        return taskRepository.findArchivable(cutoff, properties.getBatchSize())
+                .collectList()
+                .flatMap(tasks -> {
+                    if (tasks.isEmpty()) {
+                        return Mono.just(new Batch(0, 0));
+                    }
+                    List<String> ids = tasks.stream().map(Task::getId).toList();
+                    // Архивация пишет в обход очереди: её изменения записываются раньше и обновляют updatedAt,
+                    // поэтому такие задачи не удалит deleteArchived
+                    return taskWriteBehind.flush(ids)
+                            .then(taskArchiveRepository.saveAll(tasks).then())
+                            .then(taskRepository.deleteArchived(ids, cutoff))
+                            // Задачи, изменённые после чтения, остались в tasks, их копии из архива убираются
+                            .then(taskRepository.findRefs(ids).map(Task::getId).collect(Collectors.toSet()))
+                            .flatMap(kept -> {
+                                List<Task> archived = tasks.stream().filter(task -> !kept.contains(task.getId())).toList();
+                                List<Task> restored = tasks.stream().filter(task -> kept.contains(task.getId())).toList();
+                                return taskArchiveRepository.deleteAll(restored)
+                                        .then(taskCounterService.deleted(archived))
+                                        .then(taskViewService.deleteAllById(archived.stream().map(Task::getId).toList()))
+                                        .then(Mono.fromSupplier(() -> {
+                                            archivedTasks.increment(archived.size());
+                                            return new Batch(tasks.size(), archived.size());
+                                        }));
+                            });
+                });
+    }
+
+    // Пользователи подгружаются только для полного представления
+    private Flux<TaskResponse> toResponses(Flux<Task> tasks, TaskProjection projection) {
+        return projection.isHydrated()
+                ? taskHydrator.hydrate(tasks)
+                : tasks.map(taskMapper::toDtoWithoutUsers);
+    }
+
+    private record Batch(int read, int archived) {
+    }
+}
@@ -0,0 +1,235 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.exception.InvalidRequestException;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.service.TaskBulkService;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.model.BulkItemResult;
+import ru.skillbox.task_tracker.web.model.BulkItemStatus;
+import ru.skillbox.task_tracker.web.model.TaskBulkUpdateRequest;
+import ru.skillbox.task_tracker.web.model.TaskRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaskBulkServiceImpl implements TaskBulkService {
+
+    // Максимальное число элементов в одном пакетном запросе
+    private static final int MAX_BATCH_SIZE = 5_000;
+
+    private final TaskRepository taskRepository;
+    private final TaskMapper taskMapper;
+    private final UserCache userCache;
+    private final TaskViewService taskViewService;
+    private final TaskCounterService taskCounterService;
+    private final TaskWriteBehindQueue taskWriteBehind;
+
+    @Override
+    public Mono<List<BulkItemResult>> createAll(List<TaskRequest> requests) {
+        return checkBatchSize(requests)
+                // Все авторы и исполнители проверяются одним запросом $in
+                .then(existingUserIds(requests.stream()
+                        .flatMap(request -> Stream.of(request.getAuthorId(), request.getAssigneeId()))))
+                .flatMap(userIds -> {
+                    BulkItemResult[] results = new BulkItemResult[requests.size()];
+                    List<Task> tasks = new ArrayList<>();
+                    List<Integer> positions = new ArrayList<>();
+                    Instant now = Instant.now();
+
+                    for (int i = 0; i < requests.size(); i++) {
+                        TaskRequest request = requests.get(i);
+                        String error = request.getAuthorId() == null || request.getAssigneeId() == null
+                                ? "Author ID and assignee ID are required"
+                                : checkUsers(request, userIds);
+                        if (error != null) {
+                            results[i] = new BulkItemResult(i, null, BulkItemStatus.INVALID, error);
+                            continue;
+                        }
+                        Task task = taskMapper.toEntity(request);
+                        if (task.getObserverIds() == null) {
+                            task.setObserverIds(new HashSet<>());
+                        }
+                        task.setCreatedAt(now);
+                        task.setUpdatedAt(now);
+                        tasks.add(task);
+                        positions.add(i);
+                    }
+
+                    return taskRepository.insertAll(tasks)
+                            .flatMap(failures -> {
+                                List<Task> created = new ArrayList<>();
+                                for (int j = 0; j < tasks.size(); j++) {
+                                    int index = positions.get(j);
+                                    Task task = tasks.get(j);
+                                    String failure = failures.get(j);
+                                    if (failure == null) {
+                                        results[index] = new BulkItemResult(index, task.getId(), BulkItemStatus.CREATED, null);
+                                        created.add(task);
+                                    } else {
+                                        results[index] = new BulkItemResult(index, task.getId(), BulkItemStatus.FAILED, failure);
+                                    }
+                                }
+                                return taskCounterService.created(created)
+                                        .then(refreshViews(created))
+                                        .thenReturn(Arrays.asList(results));
+                            });
+                });
+    }
+
+    @Override
+    public Mono<List<BulkItemResult>> updateAll(List<TaskBulkUpdateRequest> requests) {
+        Set<String> ids = requests.stream()
+                .map(TaskBulkUpdateRequest::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Mono<Map<String, Task>> existingTasks = taskRepository.findRefs(ids)
+                .collectMap(Task::getId);
+        Mono<Set<String>> existingUserIds = existingUserIds(requests.stream()
+                .map(TaskBulkUpdateRequest::getTask)
+                .filter(Objects::nonNull)
+                .flatMap(request -> Stream.of(request.getAuthorId(), request.getAssigneeId())));
+
+        return checkBatchSize(requests)
+                // Пакет пишет задачи в обход очереди отложенной записи, поэтому сначала сбрасывает их изменения
+                .then(taskWriteBehind.flush(ids))
+                .then(Mono.zip(existingTasks, existingUserIds))
+                .flatMap(existing -> {
+                    BulkItemResult[] results = new BulkItemResult[requests.size()];
+                    List<Task> patches = new ArrayList<>();
+                    List<Integer> positions = new ArrayList<>();
+                    Instant now = Instant.now();
+
+                    for (int i = 0; i < requests.size(); i++) {
+                        TaskBulkUpdateRequest request = requests.get(i);
+                        if (request.getTask() == null) {
+                            results[i] = new BulkItemResult(i, request.getId(), BulkItemStatus.INVALID, "Task fields are missing");
+                            continue;
+                        }
+                        if (!existing.getT1().containsKey(request.getId())) {
+                            results[i] = new BulkItemResult(i, request.getId(), BulkItemStatus.NOT_FOUND,
+                                    "Task not found with id: " + request.getId());
+                            continue;
+                        }
+                        String error = checkUsers(request.getTask(), existing.getT2());
+                        if (error != null) {
+                            results[i] = new BulkItemResult(i, request.getId(), BulkItemStatus.INVALID, error);
+                            continue;
+                        }
+                        Task patch = taskMapper.toPatch(request.getTask());
+                        patch.setId(request.getId());
+                        patch.setUpdatedAt(now);
+                        patches.add(patch);
+                        positions.add(i);
+                    }
+
+                    return taskRepository.updateAll(patches)
+                            .flatMap(failures -> {
+                                List<String> updated = new ArrayList<>();
+                                Set<String> countedUsers = new HashSet<>();
+                                for (int j = 0; j < patches.size(); j++) {
+                                    int index = positions.get(j);
+                                    String id = patches.get(j).getId();
+                                    String failure = failures.get(j);
+                                    if (failure == null) {
+                                        results[index] = new BulkItemResult(index, id, BulkItemStatus.UPDATED, null);
+                                        updated.add(id);
+                                        countedUsers.addAll(countedUsers(existing.getT1().get(id), patches.get(j)));
+                                    } else {
+                                        results[index] = new BulkItemResult(index, id, BulkItemStatus.FAILED, failure);
+                                    }
+                                }
+                                // Прежние значения могли измениться после чтения, поэтому счётчики затронутых пользователей пересчитываются
+                                return taskCounterService.rebuild(countedUsers)
+                                        .then(taskRepository.findAllById(updated)
+                                                .collectList()
+                                                .flatMap(this::refreshViews))
+                                        .thenReturn(Arrays.asList(results));
+                            });
+                });
+    }
+
+    @Override
+    public Mono<List<BulkItemResult>> deleteAll(List<String> ids) {
+        return checkBatchSize(ids)
+                .then(taskWriteBehind.flush(ids.stream().filter(Objects::nonNull).toList()))
+                // Удалённой считается задача, документ которой вернул именно этот запрос: по нему уменьшаются счётчики
+                .then(taskRepository.deleteAllAndReturn(ids.stream().filter(Objects::nonNull).toList())
+                        .collectMap(Task::getId))
+                .flatMap(deletedTasks -> {
+                    Set<String> existing = deletedTasks.keySet();
+                    return taskCounterService.deleted(deletedTasks.values())
+                            .then(taskViewService.deleteAllById(existing))
+                            .then(Mono.fromSupplier(() -> {
+                                List<BulkItemResult> results = new ArrayList<>(ids.size());
+                                for (int i = 0; i < ids.size(); i++) {
+                                    String id = ids.get(i);
+                                    results.add(existing.contains(id)
+                                            ? new BulkItemResult(i, id, BulkItemStatus.DELETED, null)
+                                            : new BulkItemResult(i, id, BulkItemStatus.NOT_FOUND, "Task not found with id: " + id));
+                                }
+                                return results;
+                            }));
+                });
+    }
+
+    private Mono<Void> checkBatchSize(List<?> items) {
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            return Mono.error(new InvalidRequestException("Batch size must be between 1 and " + MAX_BATCH_SIZE));
+        }
+        return Mono.empty();
+    }
+
+    private Mono<Set<String>> existingUserIds(Stream<String> ids) {
+        return userCache.getAll(ids.filter(Objects::nonNull).collect(Collectors.toSet()))
+                .map(User::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private String checkUsers(TaskRequest request, Set<String> existingUserIds) {
+        if (request.getAuthorId() != null && !existingUserIds.contains(request.getAuthorId())) {
+            return "Author not found with id: " + request.getAuthorId();
+        }
+        if (request.getAssigneeId() != null && !existingUserIds.contains(request.getAssigneeId())) {
+            return "Assignee not found with id: " + request.getAssigneeId();
+        }
+        return null;
+    }
+
+    // Пользователи, чьи счётчики меняет патч: прежние и новые автор и исполнитель, если патч их или статус задаёт
+    private Set<String> countedUsers(Task previous, Task patch) {
+        if (patch.getAuthorId() == null && patch.getAssigneeId() == null && patch.getStatus() == null) {
+            return Set.of();
+        }
+        return Stream.of(previous.getAuthorId(), previous.getAssigneeId(), patch.getAuthorId(), patch.getAssigneeId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    // Задачи уже записаны; если проекции не обновились, они удаляются и строятся заново при первом чтении
+    private Mono<Void> refreshViews(List<Task> tasks) {
+        return taskViewService.saveAll(tasks)
+                .onErrorResume(error -> {
+                    log.warn("Failed to refresh task views after bulk write", error);
+                    return taskViewService.deleteAllById(tasks.stream().map(Task::getId).toList());
+                });
+    }
+}
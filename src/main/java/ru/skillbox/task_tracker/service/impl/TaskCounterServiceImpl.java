@@ -0,0 +1,99 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskCounters;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.repository.TaskCounterDeltas;
+import ru.skillbox.task_tracker.repository.TaskCountersRepository;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.web.model.TaskSummaryResponse;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Счётчики задач пользователей по статусам. Обновляются приращениями при каждой записи задач,
+ * поэтому сводка читается одним документом, без обхода коллекции tasks.
+ * Каскадные изменения, где затронутые задачи заранее не известны, пересчитываются агрегацией.
+ */
+@Service
+@Profile("!inmemory")
+@RequiredArgsConstructor
+public class TaskCounterServiceImpl implements TaskCounterService {
+
+    private final TaskCountersRepository taskCountersRepository;
+    private final UserCache userCache;
+
+    @Override
+    public Mono<TaskSummaryResponse> getSummary(String userId) {
+        return userCache.get(userId)
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("User not found with id: " + userId)))
+                .then(taskCountersRepository.findById(userId)
+                        .defaultIfEmpty(new TaskCounters()))
+                .map(counters -> {
+                    Map<String, Long> authored = byStatus(counters.getAuthored());
+                    Map<String, Long> assigned = byStatus(counters.getAssigned());
+                    return new TaskSummaryResponse(userId, authored, assigned, total(authored), total(assigned));
+                });
+    }
+
+    @Override
+    public Mono<Void> created(Collection<Task> tasks) {
+        TaskCounterDeltas deltas = new TaskCounterDeltas();
+        tasks.forEach(task -> deltas.add(task, 1));
+        return taskCountersRepository.apply(deltas);
+    }
+
+    @Override
+    public Mono<Void> updated(Task previous, Task updated) {
+        // Если автор, исполнитель и статус не поменялись, приращения взаимно гасятся и запроса нет
+        return taskCountersRepository.apply(new TaskCounterDeltas()
+                .add(previous, -1)
+                .add(updated, 1));
+    }
+
+    @Override
+    public Mono<Void> deleted(Collection<Task> tasks) {
+        TaskCounterDeltas deltas = new TaskCounterDeltas();
+        tasks.forEach(task -> deltas.add(task, -1));
+        return taskCountersRepository.apply(deltas);
+    }
+
+    @Override
+    public Mono<Void> rebuild(Collection<String> userIds) {
+        return taskCountersRepository.rebuild(userIds);
+    }
+
+    @Override
+    public Mono<Void> rebuildAll() {
+        return taskCountersRepository.rebuildAll();
+    }
+
+    @Override
+    public Mono<Void> deleteByUserId(String userId) {
+        return taskCountersRepository.deleteById(userId);
+    }
+
+    // Все статусы присутствуют в ответе, в том числе с нулём
+    private Map<String, Long> byStatus(Map<String, Long> counters) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (TaskStatus status : TaskStatus.values()) {
+            result.put(status.name(), counters.getOrDefault(status.name(), 0L));
+        }
+        long withoutStatus = counters.getOrDefault(TaskCounters.NO_STATUS, 0L);
+        if (withoutStatus != 0) {
+            result.put(TaskCounters.NO_STATUS, withoutStatus);
+        }
+        return result;
+    }
+
+    private long total(Map<String, Long> counters) {
+        return counters.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,262 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.mongodb.MongoServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+import ru.skillbox.task_tracker.config.TaskFeedProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.service.TaskFeedService;
+import ru.skillbox.task_tracker.web.model.TaskFeedEvent;
+import ru.skillbox.task_tracker.web.model.TaskFeedEventType;
+import ru.skillbox.task_tracker.web.model.TaskFeedFilter;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Лента изменений задач. Все подписчики получают события из одного change stream коллекции tasks,
+ * фильтрация выполняется в памяти. У каждого подписчика свой ограниченный буфер: медленный клиент теряет
+ * самые старые события, но не задерживает остальных.
+ * <p>
+ * Последние события хранятся в памяти, поэтому переподключившийся клиент получает пропущенное из истории.
+ * Если его события в истории уже нет, он догоняет общий поток отдельным change stream с этого resume token
+ * до текущего токена общего потока и дальше получает события из общего. Если resume token выпал из oplog,
+ * клиент получает RESET.
+ */
+@Service
+@Slf4j
+public class TaskFeedServiceImpl implements TaskFeedService, DisposableBean {
+
+    // InvalidResumeToken, ChangeStreamFatalError, ChangeStreamHistoryLost: с этого токена поток больше не открыть
+    private static final Set<Integer> LOST_RESUME_TOKEN_CODES = Set.of(260, 280, 286);
+
+    private final TaskRepository taskRepository;
+    private final TaskMapper taskMapper;
+    private final TaskFeedProperties properties;
+    private final Counter droppedEvents;
+
+    // Изменяются только под монитором this, чтобы история и рассылка шли в одном порядке
+    private final Deque<TaskFeedEvent> history = new ArrayDeque<>();
+    private final Set<FeedSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private BsonValue resumeToken;
+    private Disposable changeStream;
+    private final AtomicInteger catchUpStreams = new AtomicInteger();
+
+    public TaskFeedServiceImpl(TaskRepository taskRepository, TaskMapper taskMapper, TaskFeedProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.taskMapper = taskMapper;
+        this.properties = properties;
+        this.droppedEvents = Counter.builder("task.feed.dropped")
+                .description("Feed events dropped because a subscriber could not keep up")
+                .register(meterRegistry);
+        Gauge.builder("task.feed.subscribers", subscribers, Set::size)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Flux<TaskFeedEvent> subscribe(TaskFeedFilter filter, String lastEventId) {
+        return Flux.defer(() -> {
+            Sinks.Many<TaskFeedEvent> sink = Sinks.many().unicast().onBackpressureBuffer();
+            FeedSubscriber subscriber = new FeedSubscriber(filter, sink);
+            Flux<TaskFeedEvent> catchUp = Flux.empty();
+            synchronized (this) {
+                startChangeStream();
+                if (lastEventId != null) {
+                    List<TaskFeedEvent> missed = eventsAfter(lastEventId);
+                    if (missed != null) {
+                        missed.stream()
+                                .filter(filter::matches)
+                                .forEach(sink::tryEmitNext);
+                    } else {
+                        catchUp = catchUp(filter, lastEventId, resumeToken);
+                    }
+                }
+                // Пока клиент догоняет, события общего потока копятся в его sink
+                subscribers.add(subscriber);
+            }
+            return bounded(Flux.concat(catchUp, sink.asFlux()))
+                    .doFinally(signal -> subscribers.remove(subscriber));
+        });
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (changeStream != null) {
+            changeStream.dispose();
+        }
+    }
+
+    // Общий change stream открывается при первой подписке и после ошибок переоткрывается с последнего токена
+    private void startChangeStream() {
+        if (changeStream != null) {
+            return;
+        }
+        changeStream = Flux.defer(() -> taskRepository.watch(currentResumeToken()))
+                .doOnNext(this::publish)
+                // Повторы с выпавшим из oplog токеном бесполезны: поток открывается заново с текущего момента
+                .onErrorResume(TaskFeedServiceImpl::resumeTokenLost, error -> {
+                    reset(error);
+                    return Flux.empty();
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.getMinBackoff())
+                        .maxBackoff(properties.getMaxBackoff())
+                        .doBeforeRetry(signal -> log.warn("Task change stream failed, reopening", signal.failure())))
+                // Поток завершается, если коллекцию удалили или переименовали
+                .repeatWhen(completed -> completed.delayElements(properties.getMinBackoff()))
+                .subscribe();
+    }
+
+    private synchronized BsonValue currentResumeToken() {
+        return resumeToken;
+    }
+
+    // Пропущенные события восстановить нельзя: история сбрасывается, а подписчики получают RESET
+    private synchronized void reset(Throwable error) {
+        log.warn("Task change stream cannot be resumed, reopening from now", error);
+        resumeToken = null;
+        history.clear();
+        TaskFeedEvent reset = resetEvent();
+        for (FeedSubscriber subscriber : subscribers) {
+            subscriber.sink().tryEmitNext(reset);
+        }
+    }
+
+    private void publish(ChangeStreamEvent<Task> change) {
+        TaskFeedEvent event = toEvent(change);
+        synchronized (this) {
+            resumeToken = change.getResumeToken();
+            if (event == null) {
+                return;
+            }
+            history.addLast(event);
+            if (history.size() > properties.getHistorySize()) {
+                history.removeFirst();
+            }
+            for (FeedSubscriber subscriber : subscribers) {
+                if (subscriber.filter().matches(event)) {
+                    subscriber.sink().tryEmitNext(event);
+                }
+            }
+        }
+    }
+
+    // События после переданного id или null, если такого события в истории нет
+    private List<TaskFeedEvent> eventsAfter(String eventId) {
+        List<TaskFeedEvent> missed = new ArrayList<>();
+        Iterator<TaskFeedEvent> events = history.descendingIterator();
+        while (events.hasNext()) {
+            TaskFeedEvent event = events.next();
+            if (eventId.equals(event.getId())) {
+                Collections.reverse(missed);
+                return missed;
+            }
+            missed.add(event);
+        }
+        return null;
+    }
+
+    // События от lastEventId до токена общего потока на момент подписки (включительно) из отдельного change stream.
+    // Дальше подписчик получает события общего потока, поэтому отдельный поток закрывается
+    private Flux<TaskFeedEvent> catchUp(TaskFeedFilter filter, String lastEventId, BsonValue sharedToken) {
+        if (!(sharedToken instanceof BsonDocument target && target.isString("_data"))) {
+            // Общий поток ещё не получил ни одного события, догонять не до чего
+            return Flux.just(resetEvent());
+        }
+        String until = target.getString("_data").getValue();
+        return Flux.defer(() -> {
+            if (catchUpStreams.incrementAndGet() > properties.getMaxCatchUpStreams()) {
+                catchUpStreams.decrementAndGet();
+                log.debug("Too many task feed catch-up streams, resetting subscriber after {}", lastEventId);
+                return Flux.just(resetEvent());
+            }
+            log.debug("Event {} is not in feed history, catching up from a dedicated change stream", lastEventId);
+            return taskRepository.watch(new BsonDocument("_data", new BsonString(lastEventId)))
+                    // Токены одного потока упорядочены как строки _data
+                    .takeUntil(change -> change.getResumeToken() instanceof BsonDocument token
+                            && token.isString("_data")
+                            && token.getString("_data").getValue().compareTo(until) >= 0)
+                    .mapNotNull(this::toEvent)
+                    .filter(filter::matches)
+                    .onErrorResume(error -> {
+                        // Токен устарел или некорректен: клиент перечитывает задачи и продолжает с текущего момента
+                        log.info("Cannot resume task feed after {}: {}", lastEventId, error.getMessage());
+                        return Flux.just(resetEvent());
+                    })
+                    .doFinally(signal -> catchUpStreams.decrementAndGet());
+        });
+    }
+
+    private static TaskFeedEvent resetEvent() {
+        return new TaskFeedEvent(null, TaskFeedEventType.RESET, null, null, Instant.now());
+    }
+
+    static boolean resumeTokenLost(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoServerException e && LOST_RESUME_TOKEN_CODES.contains(e.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Flux<TaskFeedEvent> bounded(Flux<TaskFeedEvent> events) {
+        return events.onBackpressureBuffer(properties.getBufferSize(), dropped -> droppedEvents.increment(),
+                BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    private TaskFeedEvent toEvent(ChangeStreamEvent<Task> change) {
+        if (change.getOperationType() == null || change.getRaw() == null || change.getRaw().getDocumentKey() == null) {
+            return null;
+        }
+        TaskFeedEventType type = switch (change.getOperationType()) {
+            case INSERT -> TaskFeedEventType.INSERT;
+            case UPDATE -> TaskFeedEventType.UPDATE;
+            case REPLACE -> TaskFeedEventType.REPLACE;
+            case DELETE -> TaskFeedEventType.DELETE;
+            default -> null;
+        };
+        if (type == null) {
+            return null;
+        }
+        Task task = change.getBody();
+        String id = change.getResumeToken() instanceof BsonDocument token && token.isString("_data")
+                ? token.getString("_data").getValue()
+                : null;
+        return new TaskFeedEvent(id,
+                type,
+                documentId(change.getRaw().getDocumentKey().get("_id")),
+                task != null ? taskMapper.toDtoWithoutUsers(task) : null,
+                change.getTimestamp());
+    }
+
+    private String documentId(BsonValue id) {
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private record FeedSubscriber(TaskFeedFilter filter, Sinks.Many<TaskFeedEvent> sink) {
+    }
+}
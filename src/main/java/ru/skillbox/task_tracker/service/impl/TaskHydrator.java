@@ -0,0 +1,85 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Заполняет задачи вложенными пользователями. Задачи читаются окнами, и на каждое окно
+ * выполняется не более одного запроса {@code $in} к коллекции users вместо отдельных запросов на каждую задачу.
+ */
+@Component
+@RequiredArgsConstructor
+public class TaskHydrator {
+
+    private final UserCache userCache;
+    private final TaskMapper taskMapper;
+    private final TaskHydrationProperties properties;
+
+    public Flux<TaskResponse> hydrate(Flux<Task> tasks) {
+        return attachUsers(tasks).map(taskMapper::toDto);
+    }
+
+    public Mono<TaskResponse> hydrate(Task task) {
+        return attachUsers(task).map(taskMapper::toDto);
+    }
+
+    // Заполняет author, assignee и observers у самих задач
+    public Flux<Task> attachUsers(Flux<Task> tasks) {
+        return tasks
+                .buffer(properties.getWindowSize())
+                // Одновременно гидрируется не больше concurrency окон, следующие читаются из курсора по мере готовности
+                .flatMapSequential(this::attachUsers, properties.getConcurrency(), 1);
+    }
+
+    public Mono<Task> attachUsers(Task task) {
+        return attachUsers(List.of(task)).next();
+    }
+
+    private Flux<Task> attachUsers(List<Task> window) {
+        Set<String> userIds = new HashSet<>();
+        for (Task task : window) {
+            userIds.add(task.getAuthorId());
+            userIds.add(task.getAssigneeId());
+            userIds.addAll(task.getObserverIds());
+        }
+
+        return userCache.getAll(userIds)
+                .collectMap(User::getId)
+                .flatMapIterable(usersById -> {
+                    window.forEach(task -> attachUsers(task, usersById));
+                    return window;
+                });
+    }
+
+    private void attachUsers(Task task, Map<String, User> usersById) {
+        task.setAuthor(requireUser(usersById, task.getAuthorId()));
+        task.setAssignee(requireUser(usersById, task.getAssigneeId()));
+        task.setObservers(task.getObserverIds().stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+    }
+
+    private User requireUser(Map<String, User> usersById, String id) {
+        User user = usersById.get(id);
+        if (user == null) {
+            throw new EntityNotFoundException("User not found with id: " + id);
+        }
+        return user;
+    }
+}
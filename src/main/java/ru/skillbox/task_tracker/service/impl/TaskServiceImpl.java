@@ -7,69 +7,180 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
 import ru.skillbox.task_tracker.entity.Task;
 import ru.skillbox.task_tracker.entity.User;
 import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.exception.InvalidRequestException;
+import ru.skillbox.task_tracker.exception.VersionConflictException;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
 import ru.skillbox.task_tracker.mapper.TaskMapper;
-import ru.skillbox.task_tracker.mapper.UserMapper;
+import ru.skillbox.task_tracker.repository.TaskCursor;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
 import ru.skillbox.task_tracker.repository.TaskRepository;
 import ru.skillbox.task_tracker.repository.UserRepository;
+import ru.skillbox.task_tracker.service.TaskCounterService;
 import ru.skillbox.task_tracker.service.TaskService;
-import ru.skillbox.task_tracker.service.UserService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.model.TaskExportResponse;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
 import ru.skillbox.task_tracker.web.model.TaskRequest;
 import ru.skillbox.task_tracker.web.model.TaskResponse;
 import ru.skillbox.task_tracker.web.model.UserResponse;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @Service
 @RequiredArgsConstructor
 public class TaskServiceImpl implements TaskService {
 
+    // Ограничение размера страницы, чтобы одна страница гидрировалась одним запросом к users
+    // Страница целиком помещается в одно окно TaskHydrator с размером по умолчанию
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // Поиск сортирует по релевантности, поэтому листается смещением; глубже этого смещения не листаем
+    private static final int MAX_SEARCH_OFFSET = 10_000;
+
     private final TaskRepository taskRepository;
     private final UserRepository userRepository;
     private final TaskMapper taskMapper;
-    private final UserMapper userMapper;
-    private final UserService userService;
+    private final TaskHydrator taskHydrator;
+    private final TaskViewService taskViewService;
+    private final UserCache userCache;
+    private final TaskCounterService taskCounterService;
+    private final EntityTagMapper entityTagMapper;
+    private final TaskWriteBehindQueue taskWriteBehind;
+    private final TaskHydrationProperties hydrationProperties;
 
 
     @Override
     public Flux<TaskResponse> findAll() {
-        Flux<Task> all = taskRepository.findAll();
-        return all
-                .flatMap(task -> {
-                    validateTask(task);
-                    // Для каждой задачи загружаем данные о пользователях и маппим в DTO
-                    Mono<User> authorMono = userService.findById(task.getAuthorId())
-                            .map(userMapper::toUser);
-                    Mono<User> assigneeMono = userService.findById(task.getAssigneeId())
-                            .map(userMapper::toUser);
-                    Flux<User> observersFlux = userService.findAllById(task.getObserverIds());
-
-                    return taskMapper.toDto(task, authorMono, assigneeMono, observersFlux, userMapper);
+        if (joinsUsersInMongo()) {
+            return taskRepository.findAllWithUsers().map(this::toJoinedResponse);
+        }
+        // Пользователи подгружаются пачками на окно задач, а не отдельными запросами на каждую задачу
+        return taskHydrator.hydrate(taskRepository.findAll()
+                .doOnNext(this::validateTask));
+    }
+
+    @Override
+    public Mono<TaskPageResponse> findPage(TaskFilter filter, String cursor, int limit, TaskProjection projection) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new InvalidRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        return Mono.fromCallable(() -> cursor != null ? Optional.of(TaskCursor.decode(cursor)) : Optional.<TaskCursor>empty())
+                // Запрашиваем на одну задачу больше, чтобы понять, есть ли следующая страница
+                .flatMap(after -> taskRepository.findPage(filter, after.orElse(null), limit + 1, projection)
+                        .collectList())
+                .flatMap(tasks -> {
+                    boolean hasNext = tasks.size() > limit;
+                    List<Task> page = hasNext ? tasks.subList(0, limit) : tasks;
+                    String nextCursor = hasNext ? TaskCursor.after(page.get(page.size() - 1)).encode() : null;
+                    return toResponses(Flux.fromIterable(page), projection)
+                            .collectList()
+                            .map(items -> new TaskPageResponse(items, nextCursor));
                 });
     }
 
     @Override
-    public Mono<TaskResponse> findById(String id) {
-        Mono<Task> taskResponseMono = taskRepository.findById(id)
-                .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)));
-        return taskResponseMono
+    public Mono<TaskPageResponse> search(String query, TaskFilter filter, String cursor, int limit, TaskProjection projection) {
+        if (query == null || query.isBlank()) {
+            return Mono.error(new InvalidRequestException("Search query must not be empty"));
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new InvalidRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        return Mono.fromCallable(() -> cursor != null ? decodeOffset(cursor) : 0)
+                .flatMap(offset -> taskRepository.search(query, filter, offset, limit + 1, projection)
+                        .collectList()
+                        .flatMap(tasks -> {
+                            boolean hasNext = tasks.size() > limit && offset + limit < MAX_SEARCH_OFFSET;
+                            List<Task> page = tasks.size() > limit ? tasks.subList(0, limit) : tasks;
+                            String nextCursor = hasNext ? encodeOffset(offset + limit) : null;
+                            return toResponses(Flux.fromIterable(page), projection)
+                                    .collectList()
+                                    .map(items -> new TaskPageResponse(items, nextCursor));
+                        }));
+    }
+
+    @Override
+    public Flux<TaskExportResponse> export(TaskProjection projection) {
+        if (projection.isHydrated() && joinsUsersInMongo()) {
+            return taskRepository.findAllWithUsers().map(this::toJoinedResponse).map(taskMapper::toExport);
+        }
+        // Задачи читаются курсором по мере спроса клиента, в памяти держится не больше окна гидрации
+        return toResponses(taskRepository.findAll(projection), projection).map(taskMapper::toExport);
+    }
+
+    @Override
+    public Mono<TaskResponse> findById(String id, TaskProjection projection) {
+        // Ещё не записанные в Mongo изменения видны сразу
+        return taskWriteBehind.find(id)
+                .flatMap(task -> projection.isHydrated()
+                        ? taskHydrator.hydrate(task)
+                        : Mono.just(taskMapper.toDtoWithoutUsers(projection.project(task))))
+                .switchIfEmpty(Mono.defer(() -> findStored(id, projection)));
+    }
+
+    private Mono<TaskResponse> findStored(String id, TaskProjection projection) {
+        if (!projection.isHydrated()) {
+            // Без пользователей проекция task_views не нужна, читаем из tasks только нужные поля
+            return taskRepository.findOne(id, projection)
+                    .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
+                    .map(taskMapper::toDtoWithoutUsers);
+        }
+        if (joinsUsersInMongo()) {
+            return taskRepository.findOneWithUsers(id)
+                    .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
+                    .map(this::toJoinedResponse);
+        }
+        // Проекция уже содержит пользователей; если её ещё нет, строим её из задачи
+        return taskViewService.findById(id)
+                .switchIfEmpty(Mono.defer(() -> taskRepository.findById(id)
+                        .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
+                        .flatMap(this::repairView)));
+    }
+
+    // Проекция только создаётся: изменение, записавшее свою проекцию после нашего чтения, не откатывается.
+    // Если задачу удалили между чтением и записью, удаление проекции могло пройти раньше, поэтому она убирается
+    private Mono<TaskResponse> repairView(Task task) {
+        validateTask(task);
+        return taskViewService.saveIfAbsent(task)
+                .flatMap(response -> taskRepository.existsById(task.getId())
+                        .flatMap(exists -> exists
+                                ? Mono.just(response)
+                                : taskViewService.deleteById(task.getId())
+                                .then(Mono.error(new EntityNotFoundException("Task not found with id: " + task.getId())))));
+    }
+
+    @Override
+    public Mono<String> findETag(String id, TaskProjection projection) {
+        // Читаются только версия и id пользователей, сами пользователи берутся из UserCache
+        return taskWriteBehind.find(id)
+                .switchIfEmpty(Mono.defer(() -> taskRepository.findVersion(id)))
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
                 .flatMap(task -> {
-                    validateTask(task);
-                    // Получаем автора задачи
-                    Mono<User> authorMono = userService.findById(task.getAuthorId())
-                            .map(userMapper::toUser);
-
-                    // Получаем исполнителя задачи
-                    Mono<User> assigneeMono = userService.findById(task.getAssigneeId())
-                            .map(userMapper::toUser);
-                    // Получаем список наблюдателей задачи
-                    Flux<User> observersFlux = userService.findAllById(task.getObserverIds());
-
-                    // Маппим задачу в TaskDTO с помощью TaskMapper
-                    return taskMapper.toDto(task, authorMono, assigneeMono, observersFlux, userMapper);
+                    if (!projection.isHydrated()) {
+                        return Mono.just(entityTagMapper.task(task, List.of(), projection));
+                    }
+                    Set<String> userIds = new HashSet<>();
+                    userIds.add(task.getAuthorId());
+                    userIds.add(task.getAssigneeId());
+                    if (task.getObserverIds() != null) {
+                        userIds.addAll(task.getObserverIds());
+                    }
+                    return userCache.getAll(userIds)
+                            .collectList()
+                            .map(users -> entityTagMapper.task(task, users, projection));
                 });
     }
 
@@ -86,9 +197,17 @@ public class TaskServiceImpl implements TaskService {
                                     task.setCreatedAt(Instant.now());
                                     task.setUpdatedAt(Instant.now());
 
+                                    if (taskWriteBehind.isEnabled()) {
+                                        // Задача подтверждается после записи в очередь, в Mongo она попадёт со следующей пачкой
+                                        validateTask(task);
+                                        return taskWriteBehind.create(task)
+                                                .flatMap(taskHydrator::hydrate);
+                                    }
+
                                     // Сохранение задачи
                                     return taskRepository.save(task)
-                                            .flatMap(savedTask -> findById(savedTask.getId()));
+                                            .flatMap(saved -> taskCounterService.created(List.of(saved))
+                                                    .then(saveView(saved)));
                                 })
                 );
     }
@@ -96,43 +215,128 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public Mono<TaskResponse> update(String id, TaskRequest taskRequest) {
-        return taskRepository.findById(id)
-                .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
-                .flatMap(existingTask -> {
-                    // Обновляем существующую задачу на основе данных из TaskRequest
-                    Task updatedTask = updateTaskFields(existingTask, taskRequest);
-                    updatedTask.setUpdatedAt(Instant.now());
-                    return taskRepository.save(updatedTask);
-                })
-                .flatMap(savedTask -> findById(savedTask.getId())); // После обновления возвращаем TaskResponse
+        // В базу уходят только переданные поля ($set), остальные поля документа, включая createdAt, не меняются
+        Task patch = taskMapper.toPatch(taskRequest);
+        patch.setUpdatedAt(Instant.now());
+        if (taskWriteBehind.isEnabled()) {
+            return taskWriteBehind.update(id, patch, taskRequest.getVersion())
+                    .doOnNext(this::validateTask)
+                    .flatMap(taskHydrator::hydrate);
+        }
+        return taskRepository.updateFields(id, patch, taskRequest.getVersion())
+                .switchIfEmpty(Mono.defer(() -> taskRepository.existsById(id)
+                        .flatMap(exists -> Mono.error(exists
+                                ? new VersionConflictException("Task " + id + " was modified, expected version: " + taskRequest.getVersion())
+                                : new EntityNotFoundException("Task not found with id: " + id)))))
+                .flatMap(previous -> {
+                    // Обновлённая задача совпадает с тем, что записал $set, повторно её из базы не читаем
+                    Task updated = taskMapper.copy(previous);
+                    taskMapper.applyPatch(patch, updated);
+                    updated.setVersion(previous.getVersion() != null ? previous.getVersion() + 1 : 1L);
+                    return taskCounterService.updated(previous, updated)
+                            .then(saveView(updated)); // После обновления возвращаем TaskResponse
+                });
     }
 
     @Override
-    public Mono<Void> deleteById(String id) {
-        return taskRepository.findById(id)
-                .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
-                .flatMap(existingTask -> taskRepository.deleteById(id));
+    public Mono<Void> deleteById(String id, Long expectedVersion) {
+        // Изменения задачи из очереди записываются раньше удаления
+        // Счётчики уменьшаются по удалённому документу: параллельный запрос на ту же задачу его не получит
+        return taskWriteBehind.flush(List.of(id))
+                .then(taskRepository.deleteAndReturn(id, expectedVersion))
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null
+                        ? Mono.error(new EntityNotFoundException("Task not found with id: " + id))
+                        : taskRepository.existsById(id)
+                        .flatMap(exists -> Mono.error(exists
+                                ? new VersionConflictException("Task " + id + " was modified, expected version: " + expectedVersion)
+                                : new EntityNotFoundException("Task not found with id: " + id)))))
+                .flatMap(deleted -> taskCounterService.deleted(List.of(deleted)))
+                .then(taskViewService.deleteById(id));
     }
 
 
     @Override
     public Mono<TaskResponse> addObserver(String taskId, String observerId) {
-        return taskRepository.findById(taskId)
+        return addObservers(taskId, Set.of(observerId));
+    }
+
+    @Override
+    public Mono<TaskResponse> addObservers(String taskId, Set<String> observerIds) {
+        // Наблюдатели проверяются одним запросом, а сама задача меняется атомарно на стороне базы
+        return userCache.getAll(observerIds)
+                .map(User::getId)
+                .collect(Collectors.toSet())
+                .flatMap(found -> {
+                    Optional<String> missing = observerIds.stream()
+                            .filter(observerId -> !found.contains(observerId))
+                            .findFirst();
+                    if (missing.isPresent()) {
+                        return Mono.error(new EntityNotFoundException("Observer not found with id: " + missing.get()));
+                    }
+                    return taskWriteBehind.flush(List.of(taskId))
+                            .then(taskRepository.addObservers(taskId, observerIds))
+                            .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + taskId)));
+                })
+                .flatMap(this::saveView); // Возвращаем обновленную задачу
+    }
+
+    @Override
+    public Mono<TaskResponse> removeObserver(String taskId, String observerId) {
+        return taskWriteBehind.flush(List.of(taskId))
+                .then(taskRepository.removeObserver(taskId, observerId))
                 .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + taskId)))
-                .flatMap(task ->
-                        userRepository.findById(observerId)
-                                .switchIfEmpty(Mono.error(new EntityNotFoundException("Observer not found with id: " + observerId)))
-                                .flatMap(observer -> {
-                                    task.getObserverIds().add(observerId); // Добавляем ID наблюдателя
-                                    task.getObservers().add(observer); // Добавляем объект пользователя (наблюдателя)
-                                    return taskRepository.save(task); // Сохраняем обновленную задачу
-                                })
-                )
-                .flatMap(savedTask -> findById(savedTask.getId())); // Возвращаем обновленную задачу
+                .flatMap(this::saveView);
     }
 
+    // Пользователи подгружаются только для полного представления, иначе задачи отдаются как есть
+    private Flux<TaskResponse> toResponses(Flux<Task> tasks, TaskProjection projection) {
+        return projection.isHydrated()
+                ? taskHydrator.hydrate(tasks.doOnNext(this::validateTask))
+                : tasks.map(taskMapper::toDtoWithoutUsers);
+    }
 
+    private boolean joinsUsersInMongo() {
+        return hydrationProperties.getStrategy() == TaskHydrationProperties.Strategy.LOOKUP;
+    }
 
+    // Пользователи уже присоединены $lookup; как и в TaskHydrator, задача без автора или исполнителя не отдаётся
+    private TaskResponse toJoinedResponse(Task task) {
+        validateTask(task);
+        if (task.getAuthor() == null) {
+            throw new EntityNotFoundException("User not found with id: " + task.getAuthorId());
+        }
+        if (task.getAssignee() == null) {
+            throw new EntityNotFoundException("User not found with id: " + task.getAssigneeId());
+        }
+        return taskMapper.toDto(task);
+    }
+
+    private static String encodeOffset(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("offset:" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeOffset(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith("offset:")) {
+                throw new IllegalArgumentException();
+            }
+            int offset = Integer.parseInt(decoded.substring("offset:".length()));
+            if (offset < 0 || offset >= MAX_SEARCH_OFFSET) {
+                throw new IllegalArgumentException();
+            }
+            return offset;
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    // Обновляет проекцию task_views и возвращает ответ из неё
+    private Mono<TaskResponse> saveView(Task task) {
+        validateTask(task);
+        return taskViewService.save(task);
+    }
 
     public void validateTask(Task task) {
         if (task.getAuthorId() == null) {
@@ -145,21 +349,4 @@ public class TaskServiceImpl implements TaskService {
             throw new EntityNotFoundException("Observer IDs are missing");
         }
     }
-
-    // Метод для обновления полей задачи
-    private Task updateTaskFields(Task existingTask, TaskRequest taskRequest) {
-        Task updatedTask = new Task();
-        updatedTask.setId(existingTask.getId()); // Устанавливаем существующий ID
-        updatedTask.setAuthorId(
-                taskRequest.getAuthorId() != null ? taskRequest.getAuthorId() : existingTask.getAuthorId());
-        updatedTask.setAssigneeId(
-                taskRequest.getAssigneeId() != null ? taskRequest.getAssigneeId() : existingTask.getAssigneeId());
-        updatedTask.setObserverIds(
-                taskRequest.getObserverIds() != null ? taskRequest.getObserverIds() : existingTask.getObserverIds());
-        updatedTask.setName(taskRequest.getName() != null ? taskRequest.getName() : existingTask.getName());
-        updatedTask.setDescription(
-                taskRequest.getDescription() != null ? taskRequest.getDescription() : existingTask.getDescription());
-        updatedTask.setStatus(taskRequest.getStatus() != null ? taskRequest.getStatus() : existingTask.getStatus());
-        return updatedTask;
-    }
 }
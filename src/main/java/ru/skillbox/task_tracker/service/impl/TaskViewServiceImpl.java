@@ -0,0 +1,83 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.repository.TaskViewRepository;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@Profile("!inmemory")
+@RequiredArgsConstructor
+@Slf4j
+public class TaskViewServiceImpl implements TaskViewService {
+
+    private final TaskViewRepository taskViewRepository;
+    private final TaskHydrator taskHydrator;
+    private final TaskMapper taskMapper;
+
+    @Override
+    public Mono<TaskResponse> findById(String id) {
+        return taskViewRepository.findById(id)
+                .map(taskMapper::toDto);
+    }
+
+    @Override
+    public Mono<TaskResponse> save(Task task) {
+        // Пользователи подгружаются один раз при записи, а не при каждом чтении
+        // Ответ строится из записываемой проекции, даже если в базе уже более новая
+        return taskHydrator.attachUsers(task)
+                .map(taskMapper::toView)
+                .flatMap(view -> taskViewRepository.saveIfNewer(view)
+                        .thenReturn(taskMapper.toDto(view)));
+    }
+
+    @Override
+    public Mono<TaskResponse> saveIfAbsent(Task task) {
+        return taskHydrator.attachUsers(task)
+                .map(taskMapper::toView)
+                .flatMap(view -> taskViewRepository.insertIfAbsent(view)
+                        .thenReturn(taskMapper.toDto(view)));
+    }
+
+    @Override
+    public Mono<Void> saveAll(List<Task> tasks) {
+        return taskHydrator.attachUsers(Flux.fromIterable(tasks))
+                .map(taskMapper::toView)
+                .collectList()
+                .flatMap(taskViewRepository::upsertAll);
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return taskViewRepository.deleteById(id);
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(Collection<String> ids) {
+        return taskViewRepository.deleteAllById(ids);
+    }
+
+    @Override
+    public Mono<Long> deleteAllReferencing(String userId) {
+        return taskViewRepository.deleteAllReferencing(userId);
+    }
+
+    @Override
+    public void refreshUserInBackground(User user) {
+        taskViewRepository.updateUser(user)
+                .subscribe(
+                        updated -> log.debug("Updated user {} in {} task views", user.getId(), updated),
+                        error -> log.error("Failed to update user {} in task views", user.getId(), error));
+    }
+}
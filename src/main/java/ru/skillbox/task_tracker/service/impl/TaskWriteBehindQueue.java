@@ -0,0 +1,540 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.skillbox.task_tracker.config.TaskWriteBehindProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.exception.ServiceOverloadedException;
+import ru.skillbox.task_tracker.exception.VersionConflictException;
+import ru.skillbox.task_tracker.mapper.TaskMapper;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.repository.journal.WriteAheadLog;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Отложенная запись задач (write-behind). Создание и изменение задачи подтверждаются после записи в локальный
+ * журнал, а в Mongo задачи уходят пачками одним bulkWrite: по таймеру или сразу, как только набралась пачка.
+ * Изменения одной задачи до сброса сливаются в одну операцию.
+ * <p>
+ * Изменение существующей задачи записывается, только если в Mongo у неё всё ещё версия, от которой считала очередь.
+ * Если задачу успели изменить в обход очереди, изменение отбрасывается и учитывается в {@code task.write_behind.failed}.
+ * Поэтому повтор журнала после падения, когда часть изменений уже записана, безопасен. Операции, которые пишут
+ * задачи в обход очереди, сначала сбрасывают их изменения через {@link #flush(Collection)} или {@link #flushAll()}.
+ * <p>
+ * Чтение задачи по id видит ещё не записанные изменения, списки и поиск - только после сброса.
+ */
+@Component
+@Slf4j
+public class TaskWriteBehindQueue implements ApplicationRunner, DisposableBean {
+
+    private static final byte PUT = 1;
+
+    private final TaskRepository taskRepository;
+    private final TaskMapper taskMapper;
+    private final TaskCounterService taskCounterService;
+    private final TaskViewService taskViewService;
+    private final TaskWriteBehindProperties properties;
+
+    private final ObjectMapper json = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .addMixIn(Task.class, JournaledTask.class)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    // Очередь, журнал и пишущаяся пачка - под монитором this. Очередь упорядочена по первому изменению задачи
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final Map<String, PendingWrite> inflight = new HashMap<>();
+    private WriteAheadLog journal;
+
+    // Сбросы выполняются по одному, чтобы изменения одной задачи попадали в Mongo по порядку
+    private final Sinks.Many<Mono<Void>> flushes = Sinks.many().unicast().onBackpressureBuffer();
+    private final AtomicBoolean backgroundFlushQueued = new AtomicBoolean();
+    private Disposable flusher;
+    private Disposable timer;
+
+    private final DistributionSummary flushSize;
+    private final Timer lag;
+    private final Counter rejected;
+    private final Counter failed;
+
+    public TaskWriteBehindQueue(TaskRepository taskRepository, TaskMapper taskMapper,
+                                TaskCounterService taskCounterService, TaskViewService taskViewService,
+                                TaskWriteBehindProperties properties, MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.taskMapper = taskMapper;
+        this.taskCounterService = taskCounterService;
+        this.taskViewService = taskViewService;
+        this.properties = properties;
+        this.flushSize = DistributionSummary.builder("task.write_behind.flush.size")
+                .description("Tasks written to Mongo by one write-behind flush")
+                .register(meterRegistry);
+        this.lag = Timer.builder("task.write_behind.lag")
+                .description("Time from acknowledging a task write to writing it to Mongo")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("task.write_behind.rejected")
+                .description("Task writes rejected because the write-behind queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("task.write_behind.failed")
+                .description("Acknowledged task writes dropped because the task changed in Mongo or the write failed")
+                .register(meterRegistry);
+        Gauge.builder("task.write_behind.pending", this, TaskWriteBehindQueue::pendingCount)
+                .description("Tasks waiting to be written to Mongo")
+                .register(meterRegistry);
+        TimeGauge.builder("task.write_behind.oldest", this, TimeUnit.MILLISECONDS, TaskWriteBehindQueue::oldestAgeMillis)
+                .description("Age of the oldest task write waiting to be written to Mongo")
+                .register(meterRegistry);
+        if (properties.isEnabled()) {
+            recover();
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        flusher = flushes.asFlux()
+                .concatMap(flush -> flush.onErrorResume(error -> {
+                    log.error("Task write-behind flush failed", error);
+                    return Mono.empty();
+                }), 1)
+                .subscribe();
+        timer = Flux.interval(properties.getFlushInterval())
+                .subscribe(tick -> scheduleFlush());
+    }
+
+    @Override
+    public void destroy() {
+        if (timer != null) {
+            timer.dispose();
+        }
+        if (flusher != null) {
+            try {
+                flushAll().block(Duration.ofSeconds(30));
+            } catch (RuntimeException e) {
+                log.warn("Task write-behind queue was not flushed on shutdown, it will be replayed from the journal", e);
+            }
+            flusher.dispose();
+        }
+        synchronized (this) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    // Задача с ещё не записанными в Mongo изменениями
+    public Mono<Task> find(String id) {
+        if (!properties.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.fromSupplier(() -> {
+            synchronized (this) {
+                PendingWrite write = latestWrite(id);
+                return write != null ? taskMapper.copy(write.getLatest()) : null;
+            }
+        });
+    }
+
+    // Ставит в очередь новую задачу; id у неё уже есть
+    public Mono<Task> create(Task task) {
+        return Mono.fromSupplier(() -> {
+            task.setVersion(0L);
+            synchronized (this) {
+                accept(new PendingWrite(task.getId(), null, taskMapper.copy(task), null, true, null, Instant.now()));
+            }
+            scheduleFlushIfFull();
+            return task;
+        });
+    }
+
+    /**
+     * Ставит в очередь изменение задачи: не-null поля патча, как у {@code $set}. Если expectedVersion задана,
+     * она сверяется с последней версией задачи с учётом очереди. Возвращает задачу после изменения.
+     */
+    public Mono<Task> update(String id, Task patch, Long expectedVersion) {
+        return Mono.defer(() -> {
+                    // Задача уже в очереди: Mongo не читаем
+                    Task updated = apply(id, patch, expectedVersion, null);
+                    return updated != null
+                            ? Mono.just(updated)
+                            : taskRepository.findById(id)
+                            .switchIfEmpty(Mono.error(new EntityNotFoundException("Task not found with id: " + id)))
+                            .map(stored -> apply(id, patch, expectedVersion, stored));
+                })
+                .doOnNext(updated -> scheduleFlushIfFull());
+    }
+
+    // Записывает в Mongo ожидающие изменения этих задач
+    public Mono<Void> flush(Collection<String> ids) {
+        if (!properties.isEnabled()) {
+            return Mono.empty();
+        }
+        synchronized (this) {
+            if (ids.stream().noneMatch(id -> latestWrite(id) != null)) {
+                return Mono.empty();
+            }
+        }
+        return submit(() -> flushBatch(ids));
+    }
+
+    // Записывает в Mongo всю очередь
+    public Mono<Void> flushAll() {
+        if (!properties.isEnabled()) {
+            return Mono.empty();
+        }
+        return submit(this::flushPending);
+    }
+
+    private Task apply(String id, Task patch, Long expectedVersion, Task stored) {
+        synchronized (this) {
+            PendingWrite queued = pending.get(id);
+            PendingWrite previous = queued != null ? queued : inflight.get(id);
+            Task current = previous != null ? previous.getLatest() : stored;
+            if (current == null) {
+                return null;
+            }
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                throw new VersionConflictException("Task " + id + " was modified, expected version: " + expectedVersion);
+            }
+            Task updated = taskMapper.copy(current);
+            taskMapper.applyPatch(patch, updated);
+            updated.setVersion(current.getVersion() + 1);
+            accept(queued != null
+                    ? queued.then(new PendingWrite(id, current, updated, patch, false, current.getVersion(), Instant.now()), taskMapper)
+                    : new PendingWrite(id, taskMapper.copy(current), updated, taskMapper.copy(patch), false, current.getVersion(), Instant.now()));
+            return taskMapper.copy(updated);
+        }
+    }
+
+    // Журналирует изменение и ставит его в очередь; вызывается под монитором
+    private void accept(PendingWrite write) {
+        if (journal == null) {
+            throw new IllegalStateException("Task write-behind is disabled");
+        }
+        if (!pending.containsKey(write.getId()) && pending.size() >= properties.getCapacity()) {
+            rejected.increment();
+            throw new ServiceOverloadedException("Task write queue is full", properties.getFlushInterval());
+        }
+        byte[] record = write(write);
+        if (!journal.append(PUT, record)) {
+            compact();
+            if (!journal.append(PUT, record)) {
+                rejected.increment();
+                throw new ServiceOverloadedException("Task write journal is full", properties.getFlushInterval());
+            }
+        }
+        pending.put(write.getId(), write);
+    }
+
+    // Ошибка записи доходит до вызывающего: операции, которые пишут в обход очереди, не должны продолжаться
+    private Mono<Void> submit(Supplier<Mono<?>> flush) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            flushes.emitNext(Mono.defer(flush)
+                            .then()
+                            .doOnSuccess(ignored -> done.tryEmitEmpty())
+                            .doOnError(done::tryEmitError)
+                            .doOnCancel(() -> done.tryEmitError(new IllegalStateException("Task write-behind flush was cancelled"))),
+                    Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            return done.asMono();
+        });
+    }
+
+    private void scheduleFlushIfFull() {
+        if (pendingCount() >= properties.getBatchSize()) {
+            scheduleFlush();
+        }
+    }
+
+    // Фоновый сброс: в очереди сбросов не больше одного такого задания
+    private void scheduleFlush() {
+        if (pendingCount() > 0 && backgroundFlushQueued.compareAndSet(false, true)) {
+            // Ошибку уже записал в лог flusher, изменения остались в очереди до следующего сброса
+            submit(() -> {
+                backgroundFlushQueued.set(false);
+                return flushPending();
+            }).onErrorResume(error -> Mono.empty())
+                    .subscribe();
+        }
+    }
+
+    // Пачки пишутся, пока очередь не опустеет; после ошибки записи пачка остаётся в очереди до следующего сброса
+    private Mono<Integer> flushPending() {
+        return flushBatch(null)
+                .expand(written -> written == properties.getBatchSize() ? flushBatch(null) : Mono.empty())
+                .then(Mono.just(0));
+    }
+
+    // Пишет одну пачку: изменения переданных задач или первые batchSize задач очереди. Возвращает размер пачки.
+    // Если пачка не записана, она возвращается в очередь, а сброс завершается ошибкой
+    private Mono<Integer> flushBatch(Collection<String> ids) {
+        List<PendingWrite> batch = takeBatch(ids);
+        if (batch.isEmpty()) {
+            return Mono.just(0);
+        }
+        List<Task> inserts = new ArrayList<>();
+        List<Task> patches = new ArrayList<>();
+        List<Long> baseVersions = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.isInsert()) {
+                inserts.add(taskMapper.copy(write.getLatest()));
+            } else {
+                Task patch = taskMapper.copy(write.getPatch());
+                patch.setId(write.getId());
+                patch.setVersion(write.getLatest().getVersion());
+                patches.add(patch);
+                baseVersions.add(write.getBaseVersion());
+            }
+        }
+        return taskRepository.writeAll(inserts, patches, baseVersions)
+                .doOnError(error -> {
+                    log.warn("Failed to write {} tasks from the write-behind queue, will retry", batch.size(), error);
+                    requeue(batch);
+                })
+                .flatMap(failedIds -> {
+                    complete(batch, failedIds);
+                    return updateDerived(batch.stream().filter(write -> !failedIds.contains(write.getId())).toList())
+                            .onErrorResume(error -> {
+                                log.error("Failed to update task counters after write-behind flush", error);
+                                return Mono.empty();
+                            });
+                })
+                .thenReturn(batch.size());
+    }
+
+    private List<PendingWrite> takeBatch(Collection<String> ids) {
+        synchronized (this) {
+            List<PendingWrite> batch = new ArrayList<>();
+            if (ids != null) {
+                ids.stream()
+                        .map(pending::remove)
+                        .filter(Objects::nonNull)
+                        .forEach(batch::add);
+            } else {
+                Iterator<PendingWrite> writes = pending.values().iterator();
+                while (writes.hasNext() && batch.size() < properties.getBatchSize()) {
+                    batch.add(writes.next());
+                    writes.remove();
+                }
+            }
+            batch.forEach(write -> inflight.put(write.getId(), write));
+            return batch;
+        }
+    }
+
+    private void complete(List<PendingWrite> batch, Set<String> failedIds) {
+        Instant now = Instant.now();
+        flushSize.record(batch.size());
+        for (PendingWrite write : batch) {
+            if (failedIds.contains(write.getId())) {
+                failed.increment();
+            } else {
+                lag.record(Duration.between(write.getQueuedAt(), now));
+            }
+        }
+        if (!failedIds.isEmpty()) {
+            log.warn("Dropped write-behind changes of tasks modified or deleted in Mongo: {}", failedIds);
+        }
+        synchronized (this) {
+            batch.forEach(write -> inflight.remove(write.getId()));
+            // Записанные изменения больше не нужны журналу
+            compact();
+        }
+    }
+
+    // Пачка не записана: она возвращается в начало очереди, а изменения, пришедшие за время записи, сливаются с ней
+    private void requeue(List<PendingWrite> batch) {
+        synchronized (this) {
+            Map<String, PendingWrite> requeued = new LinkedHashMap<>();
+            for (PendingWrite write : batch) {
+                inflight.remove(write.getId());
+                PendingWrite later = pending.remove(write.getId());
+                requeued.put(write.getId(), later != null ? write.then(later, taskMapper) : write);
+            }
+            requeued.putAll(pending);
+            pending.clear();
+            pending.putAll(requeued);
+        }
+    }
+
+    // Счётчики и проекции обновляются после записи в Mongo, как при синхронной записи
+    private Mono<Void> updateDerived(List<PendingWrite> written) {
+        if (written.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Task> tasks = written.stream().map(write -> taskMapper.copy(write.getLatest())).toList();
+        return taskCounterService.created(written.stream()
+                        .filter(PendingWrite::isInsert)
+                        .map(PendingWrite::getLatest)
+                        .toList())
+                .thenMany(Flux.fromIterable(written)
+                        .filter(write -> !write.isInsert())
+                        .concatMap(write -> taskCounterService.updated(write.getBase(), write.getLatest())))
+                .then(taskViewService.saveAll(tasks)
+                        .onErrorResume(error -> {
+                            log.warn("Failed to refresh task views after write-behind flush", error);
+                            return taskViewService.deleteAllById(tasks.stream().map(Task::getId).toList());
+                        }));
+    }
+
+    // Журнал заменяется новым только с ещё не записанными изменениями; вызывается под монитором
+    private void compact() {
+        List<byte[]> records = new ArrayList<>(inflight.size() + pending.size());
+        inflight.values().forEach(write -> records.add(write(write)));
+        pending.values().forEach(write -> records.add(write(write)));
+        if (!journal.rewrite(journal.epoch() + 1, PUT, records)) {
+            // Прежний журнал остаётся: в нём есть все эти изменения
+            log.warn("Task write-behind journal cannot hold {} unwritten changes, keeping the current journal", records.size());
+        }
+    }
+
+    private void recover() {
+        Path file = properties.getJournal();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create directory for " + file, e);
+        }
+        synchronized (this) {
+            journal = new WriteAheadLog(file, (int) properties.getJournalSize().toBytes(), properties.isForceOnWrite());
+            journal.replay((operation, data) -> {
+                PendingWrite write = read(data);
+                PendingWrite existing = pending.get(write.getId());
+                // Запись того же изменения заменяет прежнюю, следующее за ним изменение сливается с ним
+                pending.put(write.getId(), existing != null && !write.isInsert()
+                        && Objects.equals(write.getBaseVersion(), existing.getLatest().getVersion())
+                        ? existing.then(write, taskMapper)
+                        : write);
+            });
+            if (!pending.isEmpty()) {
+                log.info("Recovered {} unwritten task changes from {}", pending.size(), file);
+            }
+            compact();
+        }
+    }
+
+    private PendingWrite latestWrite(String id) {
+        PendingWrite write = pending.get(id);
+        return write != null ? write : inflight.get(id);
+    }
+
+    private synchronized int pendingCount() {
+        return pending.size() + inflight.size();
+    }
+
+    private synchronized double oldestAgeMillis() {
+        Instant oldest = pending.values().stream()
+                .map(PendingWrite::getQueuedAt)
+                .min(Instant::compareTo)
+                .orElse(null);
+        return oldest != null ? Duration.between(oldest, Instant.now()).toMillis() : 0;
+    }
+
+    private byte[] write(PendingWrite write) {
+        try {
+            return json.writeValueAsBytes(write);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize task write", e);
+        }
+    }
+
+    private PendingWrite read(byte[] data) {
+        try {
+            return json.readValue(data, PendingWrite.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read task write from the journal", e);
+        }
+    }
+
+    /**
+     * Изменения одной задачи, ждущие записи. Новая задача (insert) пишется целиком, у существующей выставляются
+     * поля patch при условии, что в Mongo её версия - baseVersion. base - задача до изменений, для счётчиков.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class PendingWrite {
+
+        private String id;
+
+        private Task base;
+
+        private Task latest;
+
+        private Task patch;
+
+        private boolean insert;
+
+        private Long baseVersion;
+
+        private Instant queuedAt;
+
+        // Это изменение, а за ним later
+        PendingWrite then(PendingWrite later, TaskMapper taskMapper) {
+            Task mergedPatch = null;
+            if (!insert) {
+                mergedPatch = taskMapper.copy(patch);
+                taskMapper.applyPatch(later.getPatch(), mergedPatch);
+            }
+            return new PendingWrite(id, base, later.getLatest(), mergedPatch, insert, baseVersion, queuedAt);
+        }
+    }
+
+    // Вложенные пользователи и релевантность в журнал не пишутся
+    @JsonIgnoreProperties({"author", "assignee", "observers", "score"})
+    private abstract static class JournaledTask {
+    }
+}
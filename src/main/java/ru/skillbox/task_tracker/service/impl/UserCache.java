@@ -0,0 +1,57 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.UserCacheProperties;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.metrics.UserLookups;
+import ru.skillbox.task_tracker.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Кэш пользователей перед {@link UserRepository}. Одновременные загрузки одного ключа
+ * объединяются в одну: все подписчики ждут один и тот же future из кэша.
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final AsyncCache<String, User> cache;
+
+    public UserCache(UserRepository userRepository, UserCacheProperties properties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .buildAsync();
+        // Счётчики cache.gets (hit/miss), cache.evictions и cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    public Mono<User> get(String id) {
+        // Отмена подписчика не должна отменять общую загрузку, которую ждут другие
+        return UserLookups.counted(
+                Mono.fromFuture(() -> cache.get(id, (key, executor) -> userRepository.findById(key).toFuture()), true));
+    }
+
+    public Flux<User> getAll(Collection<String> ids) {
+        // Отсутствующие в кэше ключи догружаются одним запросом $in
+        return UserLookups.counted(Mono.fromFuture(() -> cache.getAll(ids, (keys, executor) -> userRepository.findAllById(new ArrayList<>(keys))
+                        .collectMap(User::getId)
+                        .toFuture()), true)
+                .flatMapIterable(Map::values));
+    }
+
+    public void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import ru.skillbox.task_tracker.config.UserDeletionProperties;
+import ru.skillbox.task_tracker.web.model.UserDeletionJob;
+
+import java.util.Optional;
+
+// Реестр фоновых удалений пользователей; записи о задачах хранятся ограниченное время
+@Component
+public class UserDeletionJobs {
+
+    private final Cache<String, UserDeletionJob> jobs;
+
+    public UserDeletionJobs(UserDeletionProperties properties) {
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getJobRetention())
+                .build();
+    }
+
+    public void register(UserDeletionJob job) {
+        jobs.put(job.getId(), job);
+    }
+
+    public Optional<UserDeletionJob> find(String id) {
+        return Optional.ofNullable(jobs.getIfPresent(id));
+    }
+}
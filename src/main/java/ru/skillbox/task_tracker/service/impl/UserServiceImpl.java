@@ -8,17 +8,30 @@ import org.springframework.web.server.ResponseStatusException;
 import org.w3c.dom.ls.LSOutput;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.UserDeletionProperties;
 import ru.skillbox.task_tracker.entity.User;
 import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.exception.InvalidRequestException;
+import ru.skillbox.task_tracker.exception.PreconditionFailedException;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
 import ru.skillbox.task_tracker.mapper.UserMapper;
 import ru.skillbox.task_tracker.repository.TaskRepository;
 import ru.skillbox.task_tracker.repository.UserRepository;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+import ru.skillbox.task_tracker.service.TaskCounterService;
 import ru.skillbox.task_tracker.service.TaskService;
+import ru.skillbox.task_tracker.service.TaskViewService;
 import ru.skillbox.task_tracker.service.UserService;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+import ru.skillbox.task_tracker.web.model.UserDeletionJob;
+import ru.skillbox.task_tracker.web.model.UserDeletionStatus;
 import ru.skillbox.task_tracker.web.model.UserRequest;
 import ru.skillbox.task_tracker.web.model.UserResponse;
 
+import java.time.Instant;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -28,6 +41,14 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final TaskRepository taskRepository;
+    private final TaskArchiveService taskArchiveService;
+    private final UserCache userCache;
+    private final TaskViewService taskViewService;
+    private final TaskCounterService taskCounterService;
+    private final UserDeletionJobs deletionJobs;
+    private final UserDeletionProperties deletionProperties;
+    private final EntityTagMapper entityTagMapper;
+    private final TaskWriteBehindQueue taskWriteBehind;
 
     @Override
     public Flux<UserResponse> findAll() {
@@ -36,7 +57,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public Mono<UserResponse> findById(String id) {
-        Mono<User> byId = userRepository.findById(id);
+        Mono<User> byId = userCache.get(id);
         return byId
                 .switchIfEmpty(Mono.error(new EntityNotFoundException("User not found with id: " + id)))
                 .map(userMapper::toDto);
@@ -50,34 +71,141 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public Mono<UserResponse> update(String id, UserRequest userDto) {
+    public Mono<UserResponse> update(String id, UserRequest userDto, String ifMatch) {
         return userRepository.findById(id)
                 .switchIfEmpty(Mono.error(new EntityNotFoundException("User not found with id: " + id)))
                 .flatMap(user -> {
                     // Обновление существующего объекта `user` на основе данных из `userDto`
-                    user.setName(userDto.getName());
-                    user.setEmail(userDto.getEmail());
-                    // Сохраняем обновленный объект
-                    return userRepository.save(user);
+                    User updated = new User(user.getId(), userDto.getName(), userDto.getEmail());
+                    if (ifMatch == null) {
+                        // Сохраняем обновленный объект
+                        return userRepository.save(updated);
+                    }
+                    checkETag(user, ifMatch);
+                    // Замена только при неизменном документе, чтобы не потерять параллельное изменение
+                    return userRepository.replaceIfUnchanged(user, updated)
+                            .switchIfEmpty(Mono.error(new PreconditionFailedException("User " + id + " was modified concurrently")));
+                })
+                .doOnNext(user -> {
+                    userCache.invalidate(id);
+                    // Вложенные копии пользователя в task_views обновляются в фоне
+                    taskViewService.refreshUserInBackground(user);
                 })
                 .map(userMapper::toDto); // Преобразуем обновленного пользователя в DTO
     }
 
 
     @Override
-    public Mono<Void> deleteById(String id) {
-        return taskRepository.findAllByAuthorId(id)
-                .concatWith(taskRepository.findAllByAssigneeId(id))
-                .concatWith(taskRepository.findAllByObserverIdsContaining(id))
-                .flatMap(task -> taskRepository.deleteById(task.getId()))  // Удаляем все найденные задачи
-                .then(userRepository.deleteById(id));
+    public Mono<UserDeletionJob> deleteById(String id, UserDeletePolicy policy, String reassignTo, String ifMatch) {
+        UserDeletePolicy effectivePolicy = policy != null ? policy : deletionProperties.getDefaultPolicy();
+        String target = reassignTo != null ? reassignTo : deletionProperties.getReassignTo();
+
+        Mono<Void> checkTarget = effectivePolicy != UserDeletePolicy.REASSIGN
+                ? Mono.empty()
+                : target == null || target.equals(id)
+                ? Mono.error(new InvalidRequestException("Another user to reassign tasks to is required"))
+                : userRepository.existsById(target)
+                .flatMap(exists -> exists
+                        ? Mono.<Void>empty()
+                        : Mono.error(new EntityNotFoundException("User not found with id: " + target)));
+
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("User not found with id: " + id)))
+                .doOnNext(user -> {
+                    if (ifMatch != null) {
+                        checkETag(user, ifMatch);
+                    }
+                })
+                .then(checkTarget)
+                .then(Mono.fromSupplier(() -> {
+                    UserDeletionJob job = new UserDeletionJob();
+                    job.setId(UUID.randomUUID().toString());
+                    job.setUserId(id);
+                    job.setPolicy(effectivePolicy);
+                    job.setReassignTo(effectivePolicy == UserDeletePolicy.REASSIGN ? target : null);
+                    job.setStatus(UserDeletionStatus.RUNNING);
+                    job.setStartedAt(Instant.now());
+                    deletionJobs.register(job);
+
+                    // Каскад выполняется в фоне, клиент следит за ходом по id задачи удаления
+                    cascadeDelete(job).subscribe(
+                            null,
+                            error -> {
+                                log.error("Deletion of user {} failed", id, error);
+                                job.setError(error.getMessage());
+                                job.setStatus(UserDeletionStatus.FAILED);
+                                job.setFinishedAt(Instant.now());
+                            },
+                            () -> {
+                                job.setStep(null);
+                                job.setStatus(UserDeletionStatus.COMPLETED);
+                                job.setFinishedAt(Instant.now());
+                            });
+                    return job;
+                }));
+    }
+
+    @Override
+    public Mono<UserDeletionJob> findDeletionJob(String jobId) {
+        return Mono.justOrEmpty(deletionJobs.find(jobId))
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("User deletion not found with id: " + jobId)));
+    }
+
+    private void checkETag(User user, String ifMatch) {
+        if (!entityTagMapper.matches(ifMatch, entityTagMapper.user(user), true)) {
+            throw new PreconditionFailedException("User " + user.getId() + " does not match If-Match: " + ifMatch);
+        }
     }
 
+    // Каждый шаг - одна серверная операция над всеми задачами пользователя, а не запрос на каждую задачу
+    private Mono<Void> cascadeDelete(UserDeletionJob job) {
+        String id = job.getUserId();
+        Mono<Void> tasks = switch (job.getPolicy()) {
+            case DELETE -> step(job, "delete-tasks", taskRepository.deleteAllReferencing(id)
+                    .doOnNext(job::setTasksDeleted));
+            case UNLINK -> step(job, "delete-tasks", taskRepository.deleteAllAuthoredOrAssigned(id)
+                    .doOnNext(job::setTasksDeleted))
+                    .then(step(job, "unlink-observer", taskRepository.removeObserverEverywhere(id)
+                            .doOnNext(job::setObserverLinksRemoved)));
+            case REASSIGN -> step(job, "reassign-tasks", taskRepository.reassign(id, job.getReassignTo())
+                    .doOnNext(job::setTasksReassigned))
+                    .then(step(job, "unlink-observer", taskRepository.removeObserverEverywhere(id)
+                            .doOnNext(job::setObserverLinksRemoved)));
+        };
+        // Архивные задачи обрабатываются по той же политике, чтобы в них не осталось ссылок на удалённого пользователя
+        Mono<Void> archivedTasks = taskArchiveService.deleteUserReferences(id, job.getPolicy(), job.getReassignTo());
+        // Счётчики соавторов пересчитываются после каскада: какие задачи затронуты, заранее известно только базе
+        Set<String> countedUsers = new HashSet<>();
+        // Каскад меняет задачи в обход очереди отложенной записи, поэтому сначала она сбрасывается целиком
+        return step(job, "flush-task-writes", taskWriteBehind.flushAll())
+                .then(step(job, "collect-counted-users", taskRepository.findUserIdsSharingTasks(id)
+                        .doOnNext(countedUsers::add)
+                        .then()))
+                .then(tasks)
+                .then(step(job, "archived-tasks", archivedTasks))
+                .then(Mono.defer(() -> {
+                    countedUsers.remove(id);
+                    if (job.getReassignTo() != null) {
+                        countedUsers.add(job.getReassignTo());
+                    }
+                    return step(job, "rebuild-task-counters", taskCounterService.rebuild(countedUsers)
+                            .then(taskCounterService.deleteByUserId(id)));
+                }))
+                .then(step(job, "delete-task-views", taskViewService.deleteAllReferencing(id)))
+                .then(step(job, "delete-user", userRepository.deleteById(id)))
+                .doFinally(signal -> userCache.invalidate(id));
+    }
+
+    private Mono<Void> step(UserDeletionJob job, String name, Mono<?> action) {
+        return Mono.fromRunnable(() -> job.setStep(name))
+                .then(action)
+                .then();
+    }
 
     @Override
     public Flux<User> findAllById(Set<String> observerIds) {
         // Возвращаем Flux<User> из репозитория, если он пустой, просто возвращаем пустой Flux
-        return userRepository.findAllById(observerIds)
+        return userCache.getAll(observerIds)
                 .collectList() // Собираем все результаты в список
                 .flatMapMany(users -> {
                     if (users.isEmpty()) {
@@ -1,32 +1,129 @@
 package ru.skillbox.task_tracker.web.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;;
+import ru.skillbox.task_tracker.config.TaskFeedProperties;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.exception.PreconditionFailedException;
+import ru.skillbox.task_tracker.exception.VersionConflictException;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
+import ru.skillbox.task_tracker.repository.TaskFilter;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+import ru.skillbox.task_tracker.service.TaskBulkService;
+import ru.skillbox.task_tracker.service.TaskFeedService;
 import ru.skillbox.task_tracker.service.TaskService;
+import ru.skillbox.task_tracker.web.model.BulkItemResult;
+import ru.skillbox.task_tracker.web.model.TaskBulkUpdateRequest;
+import ru.skillbox.task_tracker.web.model.TaskExportResponse;
+import ru.skillbox.task_tracker.web.model.TaskFeedEvent;
+import ru.skillbox.task_tracker.web.model.TaskFeedFilter;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
 import ru.skillbox.task_tracker.web.model.TaskRequest;
 import ru.skillbox.task_tracker.web.model.TaskResponse;
 
+import java.util.List;
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/v1/tasks")
 @RequiredArgsConstructor
 public class TaskController {
 
     private final TaskService taskService;
+    private final TaskBulkService taskBulkService;
+    private final TaskArchiveService taskArchiveService;
+    private final TaskFeedService taskFeedService;
+    private final TaskFeedProperties taskFeedProperties;
+    private final EntityTagMapper entityTagMapper;
 
     @GetMapping
-    public Flux<ResponseEntity<TaskResponse>> getAllTasks() {
-        return taskService.findAll()
+    public Mono<ResponseEntity<TaskPageResponse>> getAllTasks(@RequestParam(required = false) TaskStatus status,
+                                                              @RequestParam(required = false) String assigneeId,
+                                                              @RequestParam(required = false) String authorId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "50") int limit,
+                                                              @RequestParam(defaultValue = "full") String view,
+                                                              @RequestParam(defaultValue = "false") boolean archived) {
+        TaskFilter filter = new TaskFilter(status, assigneeId, authorId);
+        TaskProjection projection = TaskProjection.fromParameter(view);
+        // Архив читается только по явному запросу, обычный список идёт по tasks
+        return (archived
+                ? taskArchiveService.findPage(filter, cursor, limit, projection)
+                : taskService.findPage(filter, cursor, limit, projection))
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<TaskPageResponse>> searchTasks(@RequestParam String q,
+                                                              @RequestParam(required = false) TaskStatus status,
+                                                              @RequestParam(required = false) String assigneeId,
+                                                              @RequestParam(required = false) String authorId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              @RequestParam(defaultValue = "full") String view) {
+        return taskService.search(q, new TaskFilter(status, assigneeId, authorId), cursor, limit,
+                        TaskProjection.fromParameter(view))
                 .map(ResponseEntity::ok);
     }
 
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<TaskExportResponse> exportTasks(@RequestParam(defaultValue = "true") boolean hydrate,
+                                          @RequestParam(required = false) String view) {
+        // hydrate=false оставлен для старых клиентов и означает view=ids-only
+        TaskProjection projection = view != null
+                ? TaskProjection.fromParameter(view)
+                : hydrate ? TaskProjection.FULL : TaskProjection.IDS_ONLY;
+        return taskService.export(projection);
+    }
+
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TaskFeedEvent>> feed(@RequestParam(required = false) String assigneeId,
+                                                     @RequestParam(required = false) String observerId,
+                                                     @RequestParam(required = false) TaskStatus status,
+                                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // id события - resume token, браузер сам передаст его в Last-Event-ID при переподключении
+        Flux<ServerSentEvent<TaskFeedEvent>> events = taskFeedService
+                .subscribe(new TaskFeedFilter(assigneeId, observerId, status), lastEventId)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(event.getId())
+                        .event(event.getType().name())
+                        .build());
+        Flux<ServerSentEvent<TaskFeedEvent>> heartbeats = Flux.interval(taskFeedProperties.getHeartbeat())
+                .map(tick -> ServerSentEvent.<TaskFeedEvent>builder().comment("heartbeat").build());
+        // Пинги идут, пока не закончилась сама лента
+        return events.publish(shared -> Flux.merge(shared, heartbeats.takeUntilOther(shared.ignoreElements())));
+    }
 
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<TaskResponse>> getTaskById(@PathVariable String id) {
-        return taskService.findById(id)
-                .map(ResponseEntity::ok);
+    public Mono<ResponseEntity<TaskResponse>> getTaskById(@PathVariable String id,
+                                                          @RequestParam(defaultValue = "full") String view,
+                                                          @RequestParam(defaultValue = "false") boolean archived,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        TaskProjection projection = TaskProjection.fromParameter(view);
+        if (archived) {
+            return taskArchiveService.findById(id, projection)
+                    .map(ResponseEntity::ok);
+        }
+        Mono<ResponseEntity<TaskResponse>> read = taskService.findById(id, projection)
+                .map(task -> ResponseEntity.ok()
+                        .eTag(entityTagMapper.task(task, projection))
+                        .body(task));
+        if (ifNoneMatch == null) {
+            return read;
+        }
+        // Сначала сверяется только версия: если копия клиента актуальна, задача не гидрируется и не сериализуется
+        return taskService.findETag(id, projection)
+                .flatMap(etag -> entityTagMapper.matches(ifNoneMatch, etag, false)
+                        ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<TaskResponse>build())
+                        : read);
     }
 
     @PostMapping
@@ -35,22 +132,75 @@ public class TaskController {
                 .map(ResponseEntity::ok);
     }
 
-    @PutMapping("/{id}")
-    public Mono<ResponseEntity<TaskResponse>> updateTask(@PathVariable String id, @RequestBody TaskRequest task) {
-        return taskService.update(id, task)
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<List<BulkItemResult>>> createTasks(@RequestBody List<TaskRequest> tasks) {
+        return taskBulkService.createAll(tasks)
                 .map(ResponseEntity::ok);
     }
 
+    @PutMapping("/bulk")
+    public Mono<ResponseEntity<List<BulkItemResult>>> updateTasks(@RequestBody List<TaskBulkUpdateRequest> tasks) {
+        return taskBulkService.updateAll(tasks)
+                .map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/bulk/delete")
+    public Mono<ResponseEntity<List<BulkItemResult>>> deleteTasks(@RequestBody List<String> ids) {
+        return taskBulkService.deleteAll(ids)
+                .map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<TaskResponse>> updateTask(@PathVariable String id, @RequestBody TaskRequest task,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return update(id, task, ifMatch);
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<TaskResponse>> patchTask(@PathVariable String id, @RequestBody TaskRequest task,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return update(id, task, ifMatch);
+    }
+
     @PatchMapping("/observers/{id}")
     public Mono<ResponseEntity<TaskResponse>> addObserver(@PathVariable String id, @RequestParam String observerId) {
         return taskService.addObserver(id, observerId)
                 .map(ResponseEntity::ok);
     }
 
+    @PatchMapping("/observers/{id}/batch")
+    public Mono<ResponseEntity<TaskResponse>> addObservers(@PathVariable String id, @RequestBody Set<String> observerIds) {
+        return taskService.addObservers(id, observerIds)
+                .map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/observers/{id}")
+    public Mono<ResponseEntity<TaskResponse>> removeObserver(@PathVariable String id, @RequestParam String observerId) {
+        return taskService.removeObserver(id, observerId)
+                .map(ResponseEntity::ok);
+    }
 
     @DeleteMapping("/{id}")
-    public Mono<ResponseEntity<Void>> deleteTask(@PathVariable String id) {
-        return taskService.deleteById(id)
+    public Mono<ResponseEntity<Void>> deleteTask(@PathVariable String id,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return taskService.deleteById(id, entityTagMapper.version(ifMatch))
+                .onErrorMap(VersionConflictException.class, e -> ifMatch != null ? new PreconditionFailedException(e.getMessage()) : e)
                 .then(Mono.just(ResponseEntity.noContent().build()));
     }
+
+    // If-Match сверяет версию задачи; несовпадение - 412, а не 409, как у версии из тела запроса
+    private Mono<ResponseEntity<TaskResponse>> update(String id, TaskRequest task, String ifMatch) {
+        Long version = entityTagMapper.version(ifMatch);
+        if (version != null) {
+            if (task.getVersion() != null && !task.getVersion().equals(version)) {
+                return Mono.error(new PreconditionFailedException("If-Match does not match version in the request body"));
+            }
+            task.setVersion(version);
+        }
+        return taskService.update(id, task)
+                .onErrorMap(VersionConflictException.class, e -> ifMatch != null ? new PreconditionFailedException(e.getMessage()) : e)
+                .map(updated -> ResponseEntity.ok()
+                        .eTag(entityTagMapper.task(updated, TaskProjection.FULL))
+                        .body(updated));
+    }
 }
\ No newline at end of file
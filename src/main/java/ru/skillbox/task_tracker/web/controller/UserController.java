@@ -1,21 +1,31 @@
 package ru.skillbox.task_tracker.web.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
+import ru.skillbox.task_tracker.service.TaskCounterService;
 import ru.skillbox.task_tracker.service.UserService;
+import ru.skillbox.task_tracker.web.model.TaskSummaryResponse;
+import ru.skillbox.task_tracker.web.model.UserDeletePolicy;
+import ru.skillbox.task_tracker.web.model.UserDeletionJob;
 import ru.skillbox.task_tracker.web.model.UserRequest;
 import ru.skillbox.task_tracker.web.model.UserResponse;
 
+import java.net.URI;
+
 @RestController
 @RequestMapping("/api/v1/users")
 @RequiredArgsConstructor
 public class UserController {
 
     private final UserService userService;
+    private final TaskCounterService taskCounterService;
+    private final EntityTagMapper entityTagMapper;
 
 
     @GetMapping
@@ -25,9 +35,16 @@ public class UserController {
     }
 
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<UserResponse>> getUserById(@PathVariable String id) {
+    public Mono<ResponseEntity<UserResponse>> getUserById(@PathVariable String id,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Пользователь читается из UserCache, при совпадении ETag экономится сериализация и трафик
         return userService.findById(id)
-                .map(ResponseEntity::ok);
+                .map(user -> {
+                    String etag = entityTagMapper.user(user);
+                    return ifNoneMatch != null && entityTagMapper.matches(ifNoneMatch, etag, false)
+                            ? ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<UserResponse>build()
+                            : ResponseEntity.ok().eTag(etag).body(user);
+                });
     }
 
     @PostMapping
@@ -37,15 +54,37 @@ public class UserController {
     }
 
     @PutMapping("/{id}")
-    public Mono<ResponseEntity<UserResponse>> updateUser(@PathVariable String id, @RequestBody UserRequest user) {
-        return userService.update(id, user)
-                .map(ResponseEntity::ok);
+    public Mono<ResponseEntity<UserResponse>> updateUser(@PathVariable String id, @RequestBody UserRequest user,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return userService.update(id, user, ifMatch)
+                .map(updated -> ResponseEntity.ok()
+                        .eTag(entityTagMapper.user(updated))
+                        .body(updated));
     }
 
 
     @DeleteMapping("/{id}")
-    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable String id) {
-        return userService.deleteById(id)
-                .then(Mono.just(ResponseEntity.noContent().build()));
+    public Mono<ResponseEntity<UserDeletionJob>> deleteUser(@PathVariable String id,
+                                                            @RequestParam(required = false) UserDeletePolicy policy,
+                                                            @RequestParam(required = false) String reassignTo,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        // Задачи пользователя обрабатываются в фоне, ход удаления доступен по ссылке из Location
+        return userService.deleteById(id, policy, reassignTo, ifMatch)
+                .map(job -> ResponseEntity.accepted()
+                        .location(URI.create("/api/v1/users/deletions/" + job.getId()))
+                        .body(job));
+    }
+
+    @GetMapping("/{id}/task-summary")
+    public Mono<ResponseEntity<TaskSummaryResponse>> getTaskSummary(@PathVariable String id) {
+        // Читается один документ счётчиков, задачи не перебираются
+        return taskCounterService.getSummary(id)
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/deletions/{jobId}")
+    public Mono<ResponseEntity<UserDeletionJob>> getUserDeletion(@PathVariable String jobId) {
+        return userService.findDeletionJob(jobId)
+                .map(ResponseEntity::ok);
     }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package ru.skillbox.task_tracker.web.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.AdmissionProperties;
+import ru.skillbox.task_tracker.metrics.MongoLatencyMonitor;
+import ru.skillbox.task_tracker.web.model.ErrorResponse;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Допуск запросов к /api до контроллеров. Проверки идут от дешёвых к дорогим:
+ * корзина клиента и корзина клиента на эндпоинте отвечают 429, сброс по задержке Mongo
+ * и лимит одновременных запросов эндпоинта — 503. Оба ответа несут Retry-After.
+ * Все проверки неблокирующие: отказ формируется сразу, без ожидания освобождения ресурса.
+ */
+@Component
+@Slf4j
+public class AdmissionFilter implements WebFilter {
+
+    private static final String API_PREFIX = "/api/";
+    private static final String OTHER_ENDPOINT = "other";
+    private static final int MAX_CLIENT_KEY_LENGTH = 128;
+
+    private final AdmissionProperties properties;
+    private final MongoLatencyMonitor latencyMonitor;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final List<Rule> rules;
+    private final Cache<String, TokenBucket> buckets;
+
+    public AdmissionFilter(AdmissionProperties properties, MongoLatencyMonitor latencyMonitor,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.latencyMonitor = latencyMonitor;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.rules = properties.getEndpoints().entrySet().stream()
+                .map(entry -> new Rule(entry.getKey(), entry.getValue(),
+                        PathPatternParser.defaultInstance.parse(entry.getValue().getPath()),
+                        entry.getValue().getMaxConcurrency() > 0 ? new Semaphore(entry.getValue().getMaxConcurrency()) : null))
+                .toList();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(properties.getClientIdleTimeout())
+                .build();
+        rules.stream()
+                .filter(rule -> rule.permits() != null)
+                .forEach(rule -> Gauge.builder("http.server.admission.inflight", rule,
+                                r -> r.endpoint().getMaxConcurrency() - r.permits().availablePermits())
+                        .description("Requests in flight on an endpoint with a concurrency limit")
+                        .tag("endpoint", rule.name())
+                        .register(meterRegistry));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!properties.isEnabled() || !request.getPath().value().startsWith(API_PREFIX)) {
+            return chain.filter(exchange);
+        }
+        String client = clientKey(request);
+        Rule rule = match(request);
+        String endpoint = rule != null ? rule.name() : OTHER_ENDPOINT;
+        long now = System.nanoTime();
+
+        AdmissionProperties.Bucket clientLimit = properties.getClient();
+        long wait = acquire(client, clientLimit.getRate(), clientLimit.getBurst(), now);
+        if (wait > 0) {
+            return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, "client-rate", endpoint, wait,
+                    "Too many requests from client");
+        }
+        if (rule == null) {
+            return chain.filter(exchange);
+        }
+        wait = acquire(client + '|' + rule.name(), rule.endpoint().getRate(), rule.endpoint().getBurst(), now);
+        if (wait > 0) {
+            return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, "endpoint-rate", endpoint, wait,
+                    "Too many requests to " + rule.name());
+        }
+        if (rule.endpoint().isSheddable() && shouldShed()) {
+            return reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, "shed", endpoint,
+                    properties.getShedding().getRetryAfter().toNanos(), "Database is overloaded, request shed");
+        }
+        Semaphore permits = rule.permits();
+        if (permits == null) {
+            return chain.filter(exchange);
+        }
+        if (!permits.tryAcquire()) {
+            return reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, "concurrency", endpoint,
+                    properties.getShedding().getRetryAfter().toNanos(), "Too many concurrent requests to " + rule.name());
+        }
+        // Разрешение держится до конца ответа, для потоковой выгрузки — до последнего элемента
+        return Mono.defer(() -> chain.filter(exchange))
+                .doFinally(signal -> permits.release());
+    }
+
+    private long acquire(String key, double rate, int burst, long now) {
+        if (rate <= 0) {
+            return 0;
+        }
+        return buckets.get(key, k -> new TokenBucket(rate, burst, now)).tryAcquire(now);
+    }
+
+    private boolean shouldShed() {
+        double probability = shedProbability();
+        return probability > 0 && ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    // Доля сброса растёт линейно от targetLatency до maxLatency
+    double shedProbability() {
+        AdmissionProperties.Shedding shedding = properties.getShedding();
+        if (!shedding.isEnabled()) {
+            return 0;
+        }
+        double latency = latencyMonitor.latencyNanos();
+        double target = shedding.getTargetLatency().toNanos();
+        if (latency <= target) {
+            return 0;
+        }
+        double max = Math.max(target + 1, shedding.getMaxLatency().toNanos());
+        return Math.min(1, (latency - target) / (max - target));
+    }
+
+    private Rule match(ServerHttpRequest request) {
+        for (Rule rule : rules) {
+            if (rule.endpoint().getMethod().equalsIgnoreCase(request.getMethod().name())
+                    && rule.pattern().matches(request.getPath().pathWithinApplication())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    // Заголовок клиента задаёт сам клиент, поэтому ему верим, только если это разрешено явно
+    // или запрос пришёл через доверенный прокси; иначе у каждого запроса была бы своя корзина
+    String clientKey(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        String remote = address != null && address.getAddress() != null ? address.getAddress().getHostAddress() : "unknown";
+        if (!properties.isTrustClientHeader() && !properties.getTrustedProxies().contains(remote)) {
+            return remote;
+        }
+        String header = request.getHeaders().getFirst(properties.getClientHeader());
+        if (header != null && !header.isBlank()) {
+            return header.length() > MAX_CLIENT_KEY_LENGTH ? header.substring(0, MAX_CLIENT_KEY_LENGTH) : header;
+        }
+        return remote;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, HttpStatus status, String reason, String endpoint,
+                              long retryAfterNanos, String message) {
+        Counter.builder("http.server.admission.rejected")
+                .description("Requests rejected by the admission filter")
+                .tag("reason", reason)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .increment();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(retryAfterNanos)));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        ErrorResponse errorResponse = new ErrorResponse(status.value(), status.getReasonPhrase(), message, LocalDateTime.now());
+        return response.writeWith(Mono.fromCallable(() -> response.bufferFactory().wrap(serialize(errorResponse))));
+    }
+
+    // Retry-After в целых секундах с округлением вверх, не меньше одной
+    static long retryAfterSeconds(long retryAfterNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999));
+    }
+
+    private byte[] serialize(ErrorResponse errorResponse) {
+        try {
+            return objectMapper.writeValueAsBytes(errorResponse);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize admission error response", e);
+            return new byte[0];
+        }
+    }
+
+    private record Rule(String name, AdmissionProperties.Endpoint endpoint, PathPattern pattern, Semaphore permits) {
+    }
+}
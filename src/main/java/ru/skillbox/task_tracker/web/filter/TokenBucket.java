@@ -0,0 +1,31 @@
+package ru.skillbox.task_tracker.web.filter;
+
+// Корзина пополняется непрерывно со скоростью rate, вмещает не больше burst токенов
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long updatedAt;
+
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.updatedAt = now;
+    }
+
+    // 0, если токен выдан, иначе сколько наносекунд ждать следующего
+    synchronized long tryAcquire(long now) {
+        if (now > updatedAt) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -0,0 +1,22 @@
+package ru.skillbox.task_tracker.web.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Результат обработки одного элемента пакетного запроса, index - позиция элемента в запросе
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+
+    private int index;
+
+    private String id;
+
+    private BulkItemStatus status;
+
+    private String error;
+}
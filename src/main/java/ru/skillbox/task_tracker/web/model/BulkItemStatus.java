@@ -0,0 +1,5 @@
+package ru.skillbox.task_tracker.web.model;
+
+public enum BulkItemStatus {
+    CREATED, UPDATED, DELETED, NOT_FOUND, INVALID, FAILED
+}
@@ -0,0 +1,15 @@
+package ru.skillbox.task_tracker.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBulkUpdateRequest {
+
+    private String id;
+
+    private TaskRequest task;
+}
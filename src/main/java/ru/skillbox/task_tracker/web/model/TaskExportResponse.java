@@ -0,0 +1,10 @@
+package ru.skillbox.task_tracker.web.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.NoArgsConstructor;
+
+// Задача в выгрузке: поля, не вошедшие в проекцию, в поток не пишутся. Остальные ответы отдают null-поля как раньше
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskExportResponse extends TaskResponse {
+}
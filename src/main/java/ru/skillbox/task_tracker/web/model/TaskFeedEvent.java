@@ -0,0 +1,29 @@
+package ru.skillbox.task_tracker.web.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskFeedEvent {
+
+    // Resume token change stream, уходит клиенту как id события SSE
+    @JsonIgnore
+    private String id;
+
+    private TaskFeedEventType type;
+
+    private String taskId;
+
+    // Задача после изменения, без вложенных пользователей; для DELETE и RESET не заполняется
+    private TaskResponse task;
+
+    private Instant at;
+}
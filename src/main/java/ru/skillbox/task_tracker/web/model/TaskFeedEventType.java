@@ -0,0 +1,7 @@
+package ru.skillbox.task_tracker.web.model;
+
+public enum TaskFeedEventType {
+    INSERT, UPDATE, REPLACE, DELETE,
+    // Пропущенные события восстановить не удалось, клиенту нужно перечитать задачи
+    RESET
+}
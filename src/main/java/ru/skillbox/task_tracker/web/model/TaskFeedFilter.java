@@ -0,0 +1,30 @@
+package ru.skillbox.task_tracker.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+
+// Фильтры подписчика ленты задач, null означает отсутствие фильтра
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskFeedFilter {
+
+    private String assigneeId;
+
+    private String observerId;
+
+    private TaskStatus status;
+
+    // Удалённой задачи в событии нет, поэтому DELETE и RESET получают все подписчики
+    public boolean matches(TaskFeedEvent event) {
+        TaskResponse task = event.getTask();
+        if (task == null) {
+            return true;
+        }
+        return (assigneeId == null || assigneeId.equals(task.getAssigneeId()))
+                && (observerId == null || task.getObserverIds() != null && task.getObserverIds().contains(observerId))
+                && (status == null || status == task.getStatus());
+    }
+}
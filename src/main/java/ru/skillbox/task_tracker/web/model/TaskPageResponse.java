@@ -0,0 +1,18 @@
+package ru.skillbox.task_tracker.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskPageResponse {
+
+    private List<TaskResponse> items;
+
+    // Курсор следующей страницы, null на последней странице
+    private String nextCursor;
+}
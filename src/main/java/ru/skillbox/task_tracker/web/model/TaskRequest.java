@@ -24,4 +24,7 @@ public class TaskRequest {
     private Set<String> observerIds;
 
     private TaskStatus status;
+
+    // Ожидаемая версия задачи при обновлении; если задана и не совпадает, обновление отклоняется
+    private Long version;
 }
@@ -31,6 +31,11 @@ public class TaskResponse {
 
     private TaskStatus status;
 
+    private Long version;
+
+    // Релевантность, заполняется только в результатах поиска
+    private Float score;
+
     // Вложенные DTO для автора и исполнителя задачи
     private UserResponse author;
     private UserResponse assignee;
@@ -0,0 +1,25 @@
+package ru.skillbox.task_tracker.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskSummaryResponse {
+
+    private String userId;
+
+    // Число задач по статусам, где пользователь автор
+    private Map<String, Long> authored;
+
+    // Число задач по статусам, где пользователь исполнитель
+    private Map<String, Long> assigned;
+
+    private long authoredTotal;
+
+    private long assignedTotal;
+}
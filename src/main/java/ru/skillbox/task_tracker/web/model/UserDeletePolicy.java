@@ -0,0 +1,11 @@
+package ru.skillbox.task_tracker.web.model;
+
+// Что делать с задачами удаляемого пользователя
+public enum UserDeletePolicy {
+    // Удалить все задачи, где пользователь автор, исполнитель или наблюдатель
+    DELETE,
+    // Удалить задачи, где пользователь автор или исполнитель, и убрать его из наблюдателей остальных
+    UNLINK,
+    // Передать задачи другому пользователю и убрать удаляемого из наблюдателей
+    REASSIGN
+}
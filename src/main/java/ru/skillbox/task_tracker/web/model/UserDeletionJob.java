@@ -0,0 +1,39 @@
+package ru.skillbox.task_tracker.web.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Ход фонового удаления пользователя; поля обновляются по мере выполнения шагов
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserDeletionJob {
+
+    private volatile String id;
+
+    private volatile String userId;
+
+    private volatile UserDeletePolicy policy;
+
+    private volatile String reassignTo;
+
+    private volatile UserDeletionStatus status;
+
+    // Текущий шаг удаления
+    private volatile String step;
+
+    private volatile long tasksDeleted;
+
+    private volatile long tasksReassigned;
+
+    private volatile long observerLinksRemoved;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile String error;
+}
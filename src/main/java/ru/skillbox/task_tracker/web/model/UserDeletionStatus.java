@@ -0,0 +1,5 @@
+package ru.skillbox.task_tracker.web.model;
+
+public enum UserDeletionStatus {
+    RUNNING, COMPLETED, FAILED
+}
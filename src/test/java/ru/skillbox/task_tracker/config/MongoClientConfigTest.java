@@ -0,0 +1,50 @@
+package ru.skillbox.task_tracker.config;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.skillbox.task_tracker.metrics.MongoPoolMetricsListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Незаданные app.mongo.client.* не перекрывают параметры из URI
+class MongoClientConfigTest {
+
+    private static final ConnectionString URI = new ConnectionString(
+            "mongodb://localhost/test?maxPoolSize=7&waitQueueTimeoutMS=1500&connectTimeoutMS=3000");
+
+    @Test
+    void unsetPropertiesKeepUriOptions() {
+        MongoClientSettings settings = customize(new MongoClientProperties());
+
+        assertEquals(7, settings.getConnectionPoolSettings().getMaxSize());
+        assertEquals(1500, settings.getConnectionPoolSettings().getMaxWaitTime(TimeUnit.MILLISECONDS));
+        assertEquals(3000, settings.getSocketSettings().getConnectTimeout(TimeUnit.MILLISECONDS));
+        assertEquals(1, settings.getConnectionPoolSettings().getConnectionPoolListeners().size());
+    }
+
+    @Test
+    void setPropertiesOverrideUriOptions() {
+        MongoClientProperties properties = new MongoClientProperties();
+        properties.getPool().setMaxSize(50);
+        properties.getSocket().setReadTimeout(Duration.ofSeconds(30));
+
+        MongoClientSettings settings = customize(properties);
+
+        assertEquals(50, settings.getConnectionPoolSettings().getMaxSize());
+        assertEquals(1500, settings.getConnectionPoolSettings().getMaxWaitTime(TimeUnit.MILLISECONDS));
+        assertEquals(30_000, settings.getSocketSettings().getReadTimeout(TimeUnit.MILLISECONDS));
+    }
+
+    private static MongoClientSettings customize(MongoClientProperties properties) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder().applyConnectionString(URI);
+        new MongoClientConfig()
+                .mongoClientTuning(properties, new MongoPoolMetricsListener(new SimpleMeterRegistry()))
+                .customize(builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,111 @@
+package ru.skillbox.task_tracker.repository;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Ошибки отдельных операций неупорядоченного bulkWrite возвращаются по позициям, остальные операции записываются;
+// удаление пачки возвращает только задачи, помеченные этим запросом; курсор страниц проходит задачи без updatedAt
+class TaskRepositoryCustomImplTest {
+
+    private MongoServer server;
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private TaskRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        String address = server.bindAndGetConnectionString();
+        client = MongoClients.create(address);
+        mongoTemplate = new ReactiveMongoTemplate(client, "test");
+        repository = new TaskRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void insertAllReportsDuplicateIdByPosition() {
+        Map<Integer, String> failures = repository.insertAll(List.of(task("t1"), task("t1"), task("t2"))).block();
+
+        assertEquals(Set.of(1), failures.keySet());
+        assertTrue(failures.get(1).contains("E11000"));
+        assertEquals(2L, mongoTemplate.count(new Query(), Task.class).block());
+    }
+
+    @Test
+    void deleteAllAndReturnSkipsTasksClaimedByAnotherRequest() {
+        mongoTemplate.insertAll(List.of(task("t1"), task("t2"), task("t3"), task("t4"))).blockLast();
+        // t2 сейчас удаляет другой запрос, t3 пометил запрос, упавший больше минуты назад
+        mongoTemplate.updateFirst(Query.query(where("id").is("t2")), new Update()
+                .set("deleteToken", "other").set("deleteClaimedAt", Instant.now()), Task.class).block();
+        mongoTemplate.updateFirst(Query.query(where("id").is("t3")), new Update()
+                .set("deleteToken", "crashed").set("deleteClaimedAt", Instant.now().minusSeconds(120)), Task.class).block();
+
+        List<Task> deleted = repository.deleteAllAndReturn(List.of("t1", "t2", "t3", "missing")).collectList().block();
+
+        assertEquals(Set.of("t1", "t3"), deleted.stream().map(Task::getId).collect(Collectors.toSet()));
+        assertEquals("u1", deleted.get(0).getAuthorId());
+        assertEquals(TaskStatus.TODO, deleted.get(0).getStatus());
+        assertEquals(Set.of("t2", "t4"), mongoTemplate.findAll(Task.class).map(Task::getId)
+                .collect(Collectors.toSet()).block());
+    }
+
+    @Test
+    void findPageWalksPastTasksWithoutUpdatedAt() {
+        List<Task> tasks = List.of(task("t1"), task("t2"), task("t3"), task("t4"), task("t5"));
+        tasks.get(1).setUpdatedAt(null);
+        tasks.get(3).setUpdatedAt(null);
+        mongoTemplate.insertAll(tasks).blockLast();
+
+        List<String> ids = new ArrayList<>();
+        TaskCursor after = null;
+        do {
+            List<Task> page = repository.findPage(new TaskFilter(), after, 2, TaskProjection.IDS_ONLY).collectList().block();
+            page.forEach(task -> ids.add(task.getId()));
+            // Курсор проходит через строку, как у клиента
+            after = page.size() < 2 ? null : TaskCursor.decode(TaskCursor.after(page.get(page.size() - 1)).encode());
+        } while (after != null);
+
+        // Задачи без updatedAt идут последними, как в сортировке Mongo
+        assertEquals(List.of("t5", "t3", "t1", "t4", "t2"), ids);
+    }
+
+    private Task task(String id) {
+        Task task = new Task();
+        task.setId(id);
+        task.setName("task " + id);
+        task.setStatus(TaskStatus.TODO);
+        task.setAuthorId("u1");
+        task.setAssigneeId("u1");
+        task.setObserverIds(Set.of());
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.ofEpochSecond(1_700_000_000L + Integer.parseInt(id.substring(1))));
+        task.setVersion(0L);
+        return task;
+    }
+}
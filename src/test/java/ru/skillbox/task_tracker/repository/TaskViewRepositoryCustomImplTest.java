@@ -0,0 +1,91 @@
+package ru.skillbox.task_tracker.repository;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import ru.skillbox.task_tracker.entity.TaskView;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Проекция, записанная позже, но по более старой версии задачи, не перезаписывает более новую
+class TaskViewRepositoryCustomImplTest {
+
+    private MongoServer server;
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private TaskViewRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new ReactiveMongoTemplate(client, "test");
+        repository = new TaskViewRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void saveIfNewerKeepsNewerVersion() {
+        assertTrue(repository.saveIfNewer(view("t1", 2L, "second")).block());
+        assertFalse(repository.saveIfNewer(view("t1", 1L, "first")).block());
+        assertFalse(repository.saveIfNewer(view("t1", 2L, "again")).block());
+        assertEquals("second", stored("t1").getName());
+
+        assertTrue(repository.saveIfNewer(view("t1", 3L, "third")).block());
+        assertEquals("third", stored("t1").getName());
+    }
+
+    @Test
+    void saveIfNewerReplacesViewWithoutVersion() {
+        mongoTemplate.insert(view("t1", null, "legacy")).block();
+
+        assertTrue(repository.saveIfNewer(view("t1", 0L, "versioned")).block());
+        assertEquals("versioned", stored("t1").getName());
+    }
+
+    @Test
+    void insertIfAbsentNeverReplaces() {
+        assertTrue(repository.insertIfAbsent(view("t1", 1L, "first")).block());
+        assertFalse(repository.insertIfAbsent(view("t1", 5L, "repair")).block());
+        assertEquals("first", stored("t1").getName());
+    }
+
+    @Test
+    void upsertAllSkipsOlderVersions() {
+        mongoTemplate.insert(view("t1", 5L, "newer")).block();
+        mongoTemplate.insert(view("t2", 1L, "older")).block();
+
+        repository.upsertAll(List.of(view("t1", 4L, "stale"), view("t2", 2L, "fresh"), view("t3", 0L, "created")))
+                .block();
+
+        assertEquals("newer", stored("t1").getName());
+        assertEquals("fresh", stored("t2").getName());
+        assertEquals("created", stored("t3").getName());
+    }
+
+    private TaskView stored(String id) {
+        return mongoTemplate.findById(id, TaskView.class).block();
+    }
+
+    private static TaskView view(String id, Long version, String name) {
+        TaskView view = new TaskView();
+        view.setId(id);
+        view.setName(name);
+        view.setVersion(version);
+        return view;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+import ru.skillbox.task_tracker.config.InMemoryStoreProperties;
+import ru.skillbox.task_tracker.entity.User;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// findAll(Sort) сортирует снимок документов так же, как Mongo; записи выполняются вне потока подписчика
+class InMemoryCrudRepositoryTest {
+
+    @TempDir
+    Path dataDir;
+
+    private InMemoryStore store;
+    private InMemoryUserRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryStoreProperties properties = new InMemoryStoreProperties();
+        properties.setDataDir(dataDir);
+        store = new InMemoryStore(properties);
+        repository = new InMemoryUserRepository(store);
+        repository.saveAll(List.of(
+                new User("u1", "bob", "b@mail.ru"),
+                new User("u2", "Alice", null),
+                new User("u3", "alice", "a@mail.ru"),
+                new User("u4", null, "n@mail.ru"))).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void sortsByPropertiesWithNullsFirst() {
+        assertEquals(List.of("u4", "u2", "u3", "u1"), ids(Sort.by("name", "_id")));
+        assertEquals(List.of("u1", "u3", "u2", "u4"), ids(Sort.by(Sort.Direction.DESC, "name", "id")));
+    }
+
+    @Test
+    void appliesEachOrderInTurn() {
+        Sort byNameIgnoringCase = Sort.by(Sort.Order.asc("name").ignoreCase(), Sort.Order.desc("id"));
+        assertEquals(List.of("u4", "u3", "u2", "u1"), ids(byNameIgnoringCase));
+        assertEquals(List.of("u2", "u3", "u1", "u4"), ids(Sort.by("email").and(Sort.by("id"))));
+    }
+
+    @Test
+    void writesLeaveTheSubscribingThread() {
+        // Запись может ждать снимка на диск и не должна занимать поток event loop
+        String thread = repository.save(new User("u5", "eve", null))
+                .map(saved -> Thread.currentThread().getName())
+                .block();
+        assertTrue(thread.startsWith("boundedElastic"), thread);
+    }
+
+    @Test
+    void missingPropertySortsAsNull() {
+        assertEquals(List.of("u1", "u2", "u3", "u4"), ids(Sort.by("missing").and(Sort.by("id"))));
+    }
+
+    private List<String> ids(Sort sort) {
+        return repository.findAll(sort).map(User::getId).collectList().block();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.skillbox.task_tracker.repository.inmemory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.skillbox.task_tracker.config.InMemoryStoreProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Восстановление после падения: снимок и журнал дают то же состояние и те же индексы
+class InMemoryStoreTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void recoversUnflushedChangesFromJournal() {
+        InMemoryStore store = new InMemoryStore(properties(DataSize.ofMegabytes(1)));
+        store.updateUser("u1", user -> new User("u1", "alice", "alice@mail.ru"));
+        store.updateTask("t1", task -> task("t1", "u1", TaskStatus.TODO, 0));
+        store.updateTask("t2", task -> task("t2", "u1", TaskStatus.TODO, 0));
+        store.updateTask("t1", task -> task("t1", "u1", TaskStatus.DONE, 1));
+        store.updateTask("t2", task -> null);
+        // destroy не вызывается: снимок при остановке не пишется, всё восстанавливается из журнала
+
+        InMemoryStore recovered = new InMemoryStore(properties(DataSize.ofMegabytes(1)));
+        assertEquals(1, recovered.taskCount());
+        assertEquals(TaskStatus.DONE, recovered.task("t1").getStatus());
+        assertEquals(1L, recovered.task("t1").getVersion());
+        assertNull(recovered.task("t2"));
+        assertEquals(Set.of("t1"), recovered.taskIdsByAuthor("u1"));
+        assertEquals(Set.of("t1"), recovered.taskIdsByStatus(TaskStatus.DONE.name()));
+        assertEquals(Set.of(), recovered.taskIdsByStatus(TaskStatus.TODO.name()));
+        assertEquals(Set.of("u1"), recovered.userIdsByName("alice"));
+        recovered.destroy();
+    }
+
+    @Test
+    void checkpointsWhenJournalIsFull() {
+        // Журнал на несколько записей: пока пишутся задачи, снимок пишется много раз
+        InMemoryStore store = new InMemoryStore(properties(DataSize.ofKilobytes(2)));
+        for (int i = 0; i < 500; i++) {
+            String id = "t" + i;
+            String authorId = "u" + i % 5;
+            store.updateTask(id, task -> task(id, authorId, TaskStatus.TODO, 0));
+        }
+
+        InMemoryStore recovered = new InMemoryStore(properties(DataSize.ofKilobytes(2)));
+        assertEquals(500, recovered.taskCount());
+        assertEquals(500, recovered.tasksByUpdatedAt().size());
+        assertEquals(100, recovered.taskIdsByAuthor("u2").size());
+        recovered.destroy();
+    }
+
+    private InMemoryStoreProperties properties(DataSize walSize) {
+        InMemoryStoreProperties properties = new InMemoryStoreProperties();
+        properties.setDataDir(dataDir);
+        properties.setWalSize(walSize);
+        return properties;
+    }
+
+    private static Task task(String id, String authorId, TaskStatus status, long version) {
+        Task task = new Task();
+        task.setId(id);
+        task.setName("task " + id);
+        task.setAuthorId(authorId);
+        task.setAssigneeId(authorId);
+        task.setObserverIds(Set.of());
+        task.setStatus(status);
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.now());
+        task.setVersion(version);
+        return task;
+    }
+}
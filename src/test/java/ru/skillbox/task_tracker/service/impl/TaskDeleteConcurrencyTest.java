@@ -0,0 +1,152 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.config.TaskWriteBehindProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.exception.EntityNotFoundException;
+import ru.skillbox.task_tracker.exception.VersionConflictException;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.repository.TaskRepositoryCustomImpl;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.model.BulkItemResult;
+import ru.skillbox.task_tracker.web.model.BulkItemStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Параллельные удаления одной задачи уменьшают счётчики только один раз
+class TaskDeleteConcurrencyTest {
+
+    private static final int CONCURRENCY = 16;
+
+    private MongoServer server;
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private final Collection<Task> countedDeletes = new ConcurrentLinkedQueue<>();
+    private TaskServiceImpl taskService;
+    private TaskBulkServiceImpl taskBulkService;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new ReactiveMongoTemplate(client, "test");
+        TaskRepositoryCustomImpl custom = new TaskRepositoryCustomImpl(mongoTemplate);
+        TaskRepository taskRepository = mock(TaskRepository.class);
+        when(taskRepository.deleteAndReturn(anyString(), nullable(Long.class))).thenAnswer(invocation ->
+                custom.deleteAndReturn(invocation.getArgument(0), invocation.getArgument(1)));
+        when(taskRepository.deleteAllAndReturn(any())).thenAnswer(invocation ->
+                custom.deleteAllAndReturn(invocation.getArgument(0)));
+        when(taskRepository.existsById(anyString())).thenAnswer(invocation ->
+                mongoTemplate.exists(Query.query(where("id").is(invocation.getArgument(0))), Task.class));
+
+        TaskCounterService taskCounterService = mock(TaskCounterService.class);
+        when(taskCounterService.deleted(any())).thenAnswer(invocation -> {
+            countedDeletes.addAll(invocation.<Collection<Task>>getArgument(0));
+            return Mono.empty();
+        });
+        TaskViewService taskViewService = mock(TaskViewService.class);
+        when(taskViewService.deleteById(anyString())).thenReturn(Mono.empty());
+        when(taskViewService.deleteAllById(any())).thenReturn(Mono.empty());
+        // Очередь отложенной записи выключена: flush ничего не делает
+        TaskWriteBehindQueue taskWriteBehind = new TaskWriteBehindQueue(taskRepository, null, taskCounterService,
+                taskViewService, new TaskWriteBehindProperties(), new SimpleMeterRegistry());
+
+        taskService = new TaskServiceImpl(taskRepository, null, null, null, taskViewService, null,
+                taskCounterService, null, taskWriteBehind, new TaskHydrationProperties());
+        taskBulkService = new TaskBulkServiceImpl(taskRepository, null, null, taskViewService,
+                taskCounterService, taskWriteBehind);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void concurrentDeletesOfOneTaskDecrementCountersOnce() {
+        mongoTemplate.insert(task("t1")).block();
+
+        Map<String, Long> outcomes = Flux.range(0, CONCURRENCY)
+                .flatMap(i -> taskService.deleteById("t1", i % 2 == 0 ? null : 0L)
+                        .thenReturn("deleted")
+                        .onErrorResume(EntityNotFoundException.class, e -> Mono.just("not found"))
+                        .onErrorResume(VersionConflictException.class, e -> Mono.just("conflict"))
+                        .subscribeOn(Schedulers.parallel()), CONCURRENCY)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .block();
+
+        assertEquals(1L, outcomes.get("deleted"));
+        assertEquals(List.of("t1"), countedDeletes.stream().map(Task::getId).toList());
+        assertEquals("u1", countedDeletes.iterator().next().getAuthorId());
+    }
+
+    @Test
+    void concurrentBulkDeletesReportEachTaskDeletedOnce() {
+        List<String> ids = IntStream.range(0, 50).mapToObj(i -> "t" + i).toList();
+        mongoTemplate.insertAll(ids.stream().map(this::task).toList()).blockLast();
+
+        List<BulkItemResult> results = Flux.range(0, 4)
+                .flatMap(i -> taskBulkService.deleteAll(ids)
+                        .subscribeOn(Schedulers.parallel()), 4)
+                .flatMapIterable(Function.identity())
+                .collectList()
+                .block();
+
+        List<String> deleted = new ArrayList<>();
+        results.stream()
+                .filter(result -> result.getStatus() == BulkItemStatus.DELETED)
+                .forEach(result -> deleted.add(result.getId()));
+        assertEquals(ids.size(), deleted.size());
+        assertEquals(Set.copyOf(ids), Set.copyOf(deleted));
+        assertEquals(ids.size(), countedDeletes.size());
+        assertEquals(Set.copyOf(ids), countedDeletes.stream().map(Task::getId).collect(Collectors.toSet()));
+        assertEquals(0L, mongoTemplate.count(new Query(), Task.class).block());
+    }
+
+    private Task task(String id) {
+        Task task = new Task();
+        task.setId(id);
+        task.setName("task " + id);
+        task.setStatus(TaskStatus.TODO);
+        task.setAuthorId("u1");
+        task.setAssigneeId("u2");
+        task.setObserverIds(Set.of());
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.now());
+        task.setVersion(0L);
+        return task;
+    }
+}
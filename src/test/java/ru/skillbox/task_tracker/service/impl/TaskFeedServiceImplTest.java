@@ -0,0 +1,169 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import ru.skillbox.task_tracker.config.TaskFeedProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.web.model.TaskFeedEvent;
+import ru.skillbox.task_tracker.web.model.TaskFeedEventType;
+import ru.skillbox.task_tracker.web.model.TaskFeedFilter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Общий change stream: сброс при выпавшем из oplog токене и переход догнавшего клиента на общий поток
+class TaskFeedServiceImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final MappingMongoConverter converter =
+            new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+    private final List<BsonValue> watchedFrom = new CopyOnWriteArrayList<>();
+    private final List<Sinks.Many<ChangeStreamEvent<Task>>> sharedStreams = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean catchUpCancelled = new AtomicBoolean();
+    private Flux<ChangeStreamEvent<Task>> catchUpStream = Flux.never();
+    private TaskFeedProperties properties;
+    private TaskFeedServiceImpl feedService;
+
+    @BeforeEach
+    void setUp() {
+        converter.afterPropertiesSet();
+        TaskRepository taskRepository = mock(TaskRepository.class);
+        when(taskRepository.watch(any())).thenAnswer(invocation -> {
+            BsonValue token = invocation.getArgument(0);
+            watchedFrom.add(token == null ? new BsonString("now") : token);
+            if (token == null) {
+                Sinks.Many<ChangeStreamEvent<Task>> shared = Sinks.many().multicast().directBestEffort();
+                sharedStreams.add(shared);
+                return shared.asFlux();
+            }
+            return catchUpStream.doOnCancel(() -> catchUpCancelled.set(true));
+        });
+        properties = new TaskFeedProperties();
+        properties.setMinBackoff(Duration.ofMillis(10));
+        properties.setMaxBackoff(Duration.ofMillis(10));
+        feedService = new TaskFeedServiceImpl(taskRepository, null, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        feedService.destroy();
+    }
+
+    @Test
+    void lostResumeTokenResetsSubscribersAndReopensFromNow() {
+        StepVerifier.create(feedService.subscribe(new TaskFeedFilter(), null).map(this::describe))
+                .then(() -> shared(0).tryEmitNext(deleted("01")))
+                .expectNext("01")
+                .then(() -> shared(0).tryEmitError(new MongoCommandException(
+                        new BsonDocument("code", new BsonInt32(286)).append("errmsg", new BsonString("history lost")),
+                        new ServerAddress())))
+                .expectNext("RESET")
+                .then(() -> awaitSharedStreams(2))
+                .then(() -> shared(1).tryEmitNext(deleted("02")))
+                .expectNext("02")
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        // Второй раз поток открыт с текущего момента, а не с выпавшего токена
+        assertEquals(List.of(new BsonString("now"), new BsonString("now")), watchedFrom);
+    }
+
+    @Test
+    void reconnectCatchesUpThenJoinsSharedStream() {
+        // Общий поток уже на событии 05, история событий клиента до рестарта потеряна
+        feedService.subscribe(new TaskFeedFilter(), null).subscribe();
+        shared(0).tryEmitNext(deleted("05"));
+        properties.setHistorySize(0);
+        catchUpStream = Flux.just(deleted("03"), deleted("04"), deleted("05"), deleted("06"))
+                .concatWith(Flux.never());
+
+        StepVerifier.create(feedService.subscribe(new TaskFeedFilter(), "02").map(this::describe))
+                .expectNext("03", "04", "05")
+                .then(() -> shared(0).tryEmitNext(deleted("06")))
+                .then(() -> shared(0).tryEmitNext(deleted("07")))
+                .expectNext("06", "07")
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        assertTrue(catchUpCancelled.get());
+        assertEquals(new BsonDocument("_data", new BsonString("02")), watchedFrom.get(1));
+    }
+
+    @Test
+    void catchUpStreamsAreCapped() {
+        properties.setMaxCatchUpStreams(1);
+        feedService.subscribe(new TaskFeedFilter(), null).subscribe();
+        shared(0).tryEmitNext(deleted("05"));
+        properties.setHistorySize(0);
+
+        feedService.subscribe(new TaskFeedFilter(), "02").subscribe();
+        StepVerifier.create(feedService.subscribe(new TaskFeedFilter(), "03").map(this::describe))
+                .expectNext("RESET")
+                .thenCancel()
+                .verify(TIMEOUT);
+        assertEquals(2, watchedFrom.size());
+    }
+
+    @Test
+    void reconnectBeforeFirstSharedEventIsReset() {
+        StepVerifier.create(feedService.subscribe(new TaskFeedFilter(), "02").map(this::describe))
+                .expectNext("RESET")
+                .then(() -> shared(0).tryEmitNext(deleted("03")))
+                .expectNext("03")
+                .thenCancel()
+                .verify(TIMEOUT);
+        assertNull(watchedFrom.stream().filter(BsonDocument.class::isInstance).findAny().orElse(null));
+    }
+
+    private Sinks.Many<ChangeStreamEvent<Task>> shared(int index) {
+        return sharedStreams.get(index);
+    }
+
+    private void awaitSharedStreams(int count) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (sharedStreams.size() < count && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private String describe(TaskFeedEvent event) {
+        return event.getType() == TaskFeedEventType.RESET ? "RESET" : event.getId();
+    }
+
+    private ChangeStreamEvent<Task> deleted(String token) {
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>("delete",
+                new BsonDocument("_data", new BsonString(token)), null, null, null, null,
+                new BsonDocument("_id", new BsonString("t" + token)), new BsonTimestamp(1, 0),
+                null, null, null, null, null, null);
+        return new ChangeStreamEvent<>(raw, Task.class, converter);
+    }
+}
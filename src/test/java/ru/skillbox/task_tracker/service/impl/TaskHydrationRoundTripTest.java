@@ -0,0 +1,117 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.config.UserCacheProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
+import ru.skillbox.task_tracker.mapper.TaskMapperImpl;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.repository.UserRepository;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Проверяет, что число запросов к users растёт не быстрее числа окон, а не с числом задач
+@SpringJUnitConfig({TaskServiceImpl.class, TaskHydrator.class, UserCache.class, TaskMapperImpl.class, UserMapperImpl.class,
+        EntityTagMapper.class, SimpleMeterRegistry.class})
+@EnableConfigurationProperties({UserCacheProperties.class, TaskHydrationProperties.class})
+class TaskHydrationRoundTripTest {
+
+    private static final int USERS = 200;
+
+    @MockBean
+    private TaskRepository taskRepository;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private TaskViewService taskViewService;
+
+    @MockBean
+    private TaskCounterService taskCounterService;
+
+    @MockBean
+    private TaskWriteBehindQueue taskWriteBehindQueue;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskHydrationProperties hydrationProperties;
+
+    private final Map<String, User> users = new HashMap<>();
+
+    // Контекст и UserCache общие для всех запусков, поэтому у каждого запуска свои id пользователей
+    private String userPrefix;
+
+    @BeforeEach
+    void setUp() {
+        userPrefix = UUID.randomUUID() + "-";
+        for (int i = 0; i < USERS; i++) {
+            users.put(userPrefix + i, new User(userPrefix + i, "name-" + i, "user" + i + "@mail.ru"));
+        }
+        when(userRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            return Flux.fromIterable(ids).mapNotNull(users::get);
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 499, 500, 501, 5_000, 50_000})
+    void userRoundTripsGrowWithWindowsNotWithTasks(int taskCount) {
+        when(taskRepository.findAll()).thenReturn(Flux.range(0, taskCount).map(this::task));
+
+        StepVerifier.create(taskService.findAll())
+                .expectNextCount(taskCount)
+                .verifyComplete();
+
+        int windowSize = hydrationProperties.getWindowSize();
+        int windows = (taskCount + windowSize - 1) / windowSize;
+        long userRoundTrips = mockingDetails(userRepository).getInvocations().size();
+
+        // Повторяющиеся пользователи следующих окон уже лежат в UserCache
+        assertTrue(userRoundTrips >= 1 && userRoundTrips <= windows);
+        verify(userRepository, never()).findById(anyString());
+    }
+
+    private Task task(int i) {
+        Task task = new Task();
+        task.setId("task-" + i);
+        task.setName("task " + i);
+        task.setStatus(TaskStatus.TODO);
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.now());
+        task.setAuthorId(userPrefix + (i % USERS));
+        task.setAssigneeId(userPrefix + ((i + 1) % USERS));
+        task.setObserverIds(Set.of(userPrefix + ((i + 2) % USERS), userPrefix + ((i + 3) % USERS)));
+        return task;
+    }
+}
@@ -0,0 +1,161 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import ru.skillbox.task_tracker.config.TaskFeedProperties;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
+import ru.skillbox.task_tracker.mapper.TaskMapperImpl;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.repository.TaskProjection;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+import ru.skillbox.task_tracker.service.TaskBulkService;
+import ru.skillbox.task_tracker.service.TaskFeedService;
+import ru.skillbox.task_tracker.web.controller.GlobalExceptionHandler;
+import ru.skillbox.task_tracker.web.controller.TaskController;
+import ru.skillbox.task_tracker.web.model.TaskPageResponse;
+import ru.skillbox.task_tracker.web.model.TaskResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Курсор поиска: смещение в base64, некорректный курсор - 400, внутренняя ошибка аргумента - 500, страницы после MAX_SEARCH_OFFSET не отдаются
+class TaskSearchCursorTest {
+
+    private TaskRepository taskRepository;
+    private TaskServiceImpl taskService;
+
+    @BeforeEach
+    void setUp() {
+        taskRepository = mock(TaskRepository.class);
+        // Репозиторий отдаёт результаты поиска с номерами skip, skip + 1, ... из 20000 найденных
+        when(taskRepository.search(eq("report"), any(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            int skip = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            return Flux.range(skip, Math.max(0, Math.min(limit, 20_000 - skip))).map(this::task);
+        });
+        TaskMapperImpl taskMapper = new TaskMapperImpl();
+        ReflectionTestUtils.setField(taskMapper, "userMapper", new UserMapperImpl());
+        taskService = new TaskServiceImpl(taskRepository, null, taskMapper, null, null, null, null, null, null,
+                new TaskHydrationProperties());
+    }
+
+    @Test
+    void nextCursorContinuesFromPageEnd() {
+        TaskPageResponse first = search(null, 2);
+        assertEquals(List.of("t0", "t1"), ids(first));
+        assertEquals(cursor(2), first.getNextCursor());
+
+        TaskPageResponse second = search(first.getNextCursor(), 2);
+        assertEquals(List.of("t2", "t3"), ids(second));
+        verify(taskRepository).search(eq("report"), any(), eq(2), eq(3), eq(TaskProjection.IDS_ONLY));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        when(taskRepository.search(eq("short"), any(), anyInt(), anyInt(), any()))
+                .thenReturn(Flux.range(0, 3).map(this::task));
+        TaskPageResponse page = taskService.search("short", null, null, 5, TaskProjection.IDS_ONLY).block();
+        assertEquals(3, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void hasNextStopsAtMaxSearchOffset() {
+        // Ещё есть результаты, но следующая страница начиналась бы с MAX_SEARCH_OFFSET
+        TaskPageResponse atCap = search(cursor(9_990), 10);
+        assertEquals(10, atCap.getItems().size());
+        assertNull(atCap.getNextCursor());
+
+        TaskPageResponse beforeCap = search(cursor(9_980), 10);
+        assertEquals(cursor(9_990), beforeCap.getNextCursor());
+    }
+
+    @Test
+    void invalidCursorIsBadRequest() {
+        WebTestClient client = client();
+        for (String cursor : List.of("not base64!", encode("page:2"), encode("offset:x"), encode("offset:-1"),
+                cursor(10_000))) {
+            client.get()
+                    .uri(uri -> uri.path("/api/v1/tasks/search")
+                            .queryParam("q", "report")
+                            .queryParam("cursor", cursor)
+                            .queryParam("view", "ids-only")
+                            .build())
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+        client.get()
+                .uri(uri -> uri.path("/api/v1/tasks/search")
+                        .queryParam("q", "report")
+                        .queryParam("cursor", cursor(2))
+                        .queryParam("view", "ids-only")
+                        .build())
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void internalIllegalArgumentIsServerError() {
+        when(taskRepository.search(eq("broken"), any(), anyInt(), anyInt(), any()))
+                .thenReturn(Flux.error(new IllegalArgumentException("bad query built")));
+        client().get()
+                .uri(uri -> uri.path("/api/v1/tasks/search")
+                        .queryParam("q", "broken")
+                        .queryParam("view", "ids-only")
+                        .build())
+                .exchange()
+                .expectStatus().is5xxServerError();
+    }
+
+    private WebTestClient client() {
+        return WebTestClient.bindToController(new TaskController(taskService, mock(TaskBulkService.class),
+                        mock(TaskArchiveService.class), mock(TaskFeedService.class), new TaskFeedProperties(),
+                        mock(EntityTagMapper.class)))
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private TaskPageResponse search(String cursor, int limit) {
+        return taskService.search("report", null, cursor, limit, TaskProjection.IDS_ONLY).block();
+    }
+
+    private static List<String> ids(TaskPageResponse page) {
+        return page.getItems().stream().map(TaskResponse::getId).toList();
+    }
+
+    private static String cursor(int offset) {
+        return encode("offset:" + offset);
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Task task(int i) {
+        Task task = new Task();
+        task.setId("t" + i);
+        task.setName("report " + i);
+        task.setStatus(TaskStatus.TODO);
+        task.setAuthorId("u1");
+        task.setAssigneeId("u1");
+        task.setVersion(0L);
+        return task;
+    }
+}
@@ -0,0 +1,206 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.skillbox.task_tracker.config.TaskFeedProperties;
+import ru.skillbox.task_tracker.config.TaskHydrationProperties;
+import ru.skillbox.task_tracker.config.TaskWriteBehindProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.entity.User;
+import ru.skillbox.task_tracker.mapper.EntityTagMapper;
+import ru.skillbox.task_tracker.mapper.TaskMapperImpl;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.repository.TaskRepositoryCustomImpl;
+import ru.skillbox.task_tracker.service.TaskArchiveService;
+import ru.skillbox.task_tracker.service.TaskBulkService;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskFeedService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+import ru.skillbox.task_tracker.web.controller.GlobalExceptionHandler;
+import ru.skillbox.task_tracker.web.controller.TaskController;
+import ru.skillbox.task_tracker.web.model.TaskRequest;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Параллельные $addToSet/$pull не теряют наблюдателей; устаревшая версия в теле - 409, в If-Match - 412,
+// актуальный If-None-Match - 304
+class TaskUpdateConcurrencyTest {
+
+    private static final int CONCURRENCY = 16;
+
+    private MongoServer server;
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private TaskServiceImpl taskService;
+    private WebTestClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new ReactiveMongoTemplate(client, "test");
+        TaskRepositoryCustomImpl custom = new TaskRepositoryCustomImpl(mongoTemplate);
+        TaskRepository taskRepository = mock(TaskRepository.class);
+        when(taskRepository.addObservers(anyString(), any())).thenAnswer(invocation ->
+                custom.addObservers(invocation.getArgument(0), invocation.getArgument(1)));
+        when(taskRepository.removeObserver(anyString(), anyString())).thenAnswer(invocation ->
+                custom.removeObserver(invocation.getArgument(0), invocation.getArgument(1)));
+        when(taskRepository.updateFields(anyString(), any(), nullable(Long.class))).thenAnswer(invocation ->
+                custom.updateFields(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(taskRepository.findVersion(anyString())).thenAnswer(invocation ->
+                custom.findVersion(invocation.getArgument(0)));
+        when(taskRepository.findOne(anyString(), any())).thenAnswer(invocation ->
+                custom.findOne(invocation.getArgument(0), invocation.getArgument(1)));
+        when(taskRepository.existsById(anyString())).thenAnswer(invocation ->
+                mongoTemplate.exists(Query.query(where("id").is(invocation.getArgument(0))), Task.class));
+
+        TaskMapperImpl taskMapper = new TaskMapperImpl();
+        ReflectionTestUtils.setField(taskMapper, "userMapper", new UserMapperImpl());
+        UserCache userCache = mock(UserCache.class);
+        when(userCache.getAll(any())).thenAnswer(invocation -> Flux.fromIterable(invocation.<Collection<String>>getArgument(0))
+                .map(id -> new User(id, "user " + id, null)));
+        TaskCounterService taskCounterService = mock(TaskCounterService.class);
+        when(taskCounterService.updated(any(), any())).thenReturn(Mono.empty());
+        TaskViewService taskViewService = mock(TaskViewService.class);
+        when(taskViewService.save(any())).thenAnswer(invocation ->
+                Mono.just(taskMapper.toDtoWithoutUsers(invocation.getArgument(0))));
+        // Очередь отложенной записи выключена: изменения сразу идут в Mongo
+        TaskWriteBehindQueue taskWriteBehind = new TaskWriteBehindQueue(taskRepository, null, taskCounterService,
+                taskViewService, new TaskWriteBehindProperties(), new SimpleMeterRegistry());
+        EntityTagMapper entityTagMapper = new EntityTagMapper();
+
+        taskService = new TaskServiceImpl(taskRepository, null, taskMapper, null, taskViewService, userCache,
+                taskCounterService, entityTagMapper, taskWriteBehind, new TaskHydrationProperties());
+        webClient = WebTestClient.bindToController(new TaskController(taskService, mock(TaskBulkService.class),
+                        mock(TaskArchiveService.class), mock(TaskFeedService.class), new TaskFeedProperties(),
+                        entityTagMapper))
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void concurrentObserverChangesLoseNoUpdates() {
+        Set<String> removed = IntStream.range(0, CONCURRENCY).mapToObj(i -> "old" + i).collect(Collectors.toSet());
+        Set<String> added = IntStream.range(0, CONCURRENCY).mapToObj(i -> "new" + i).collect(Collectors.toSet());
+        mongoTemplate.insert(task("t1", removed)).block();
+
+        Flux.range(0, CONCURRENCY)
+                .flatMap(i -> Flux.merge(
+                                taskService.addObserver("t1", "new" + i),
+                                taskService.removeObserver("t1", "old" + i))
+                        .subscribeOn(Schedulers.parallel()), CONCURRENCY)
+                .blockLast();
+
+        Task stored = mongoTemplate.findById("t1", Task.class).block();
+        assertEquals(added, stored.getObserverIds());
+        assertEquals(2L * CONCURRENCY, stored.getVersion());
+    }
+
+    @Test
+    void staleVersionInBodyIsConflict() {
+        mongoTemplate.insert(task("t1", Set.of())).block();
+
+        put("t1", request("first", 0L)).expectStatus().isOk();
+        put("t1", request("second", 0L)).expectStatus().isEqualTo(409);
+
+        assertEquals("first", mongoTemplate.findById("t1", Task.class).block().getName());
+    }
+
+    @Test
+    void conditionalRequestsCompareETags() {
+        mongoTemplate.insert(task("t1", Set.of())).block();
+        String etag = get("t1", null).expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        get("t1", etag).expectStatus().isNotModified();
+
+        webClient.patch().uri("/api/v1/tasks/t1")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(request("first", null))
+                .exchange()
+                .expectStatus().isOk();
+        // Задача изменилась: старый ETag больше не совпадает ни для чтения, ни для записи
+        get("t1", etag).expectStatus().isOk();
+        webClient.patch().uri("/api/v1/tasks/t1")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(request("second", null))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        assertEquals("first", mongoTemplate.findById("t1", Task.class).block().getName());
+    }
+
+    private WebTestClient.ResponseSpec get(String id, String ifNoneMatch) {
+        return webClient.get()
+                .uri(uri -> uri.path("/api/v1/tasks/" + id)
+                        .queryParam("view", "ids-only")
+                        .build())
+                .headers(headers -> {
+                    if (ifNoneMatch != null) {
+                        headers.setIfNoneMatch(ifNoneMatch);
+                    }
+                })
+                .exchange();
+    }
+
+    private WebTestClient.ResponseSpec put(String id, TaskRequest request) {
+        return webClient.put().uri("/api/v1/tasks/" + id)
+                .bodyValue(request)
+                .exchange();
+    }
+
+    private static TaskRequest request(String name, Long version) {
+        TaskRequest request = new TaskRequest();
+        request.setName(name);
+        request.setVersion(version);
+        return request;
+    }
+
+    private Task task(String id, Set<String> observerIds) {
+        Task task = new Task();
+        task.setId(id);
+        task.setName("task " + id);
+        task.setStatus(TaskStatus.TODO);
+        task.setAuthorId("u1");
+        task.setAssigneeId("u2");
+        task.setObserverIds(observerIds);
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.now());
+        task.setVersion(0L);
+        return task;
+    }
+}
@@ -0,0 +1,169 @@
+package ru.skillbox.task_tracker.service.impl;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.TaskWriteBehindProperties;
+import ru.skillbox.task_tracker.entity.Task;
+import ru.skillbox.task_tracker.entity.TaskStatus;
+import ru.skillbox.task_tracker.mapper.TaskMapperImpl;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+import ru.skillbox.task_tracker.repository.TaskRepository;
+import ru.skillbox.task_tracker.repository.TaskRepositoryCustomImpl;
+import ru.skillbox.task_tracker.service.TaskCounterService;
+import ru.skillbox.task_tracker.service.TaskViewService;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Повтор журнала после падения между записью пачки в Mongo и сжатием журнала
+class TaskWriteBehindQueueTest {
+
+    @TempDir
+    Path dataDir;
+
+    private MongoServer server;
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private TaskRepository taskRepository;
+    private TaskCounterService taskCounterService;
+    private TaskViewService taskViewService;
+    private TaskMapperImpl taskMapper;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new ReactiveMongoTemplate(client, "test");
+        TaskRepositoryCustomImpl custom = new TaskRepositoryCustomImpl(mongoTemplate);
+        taskRepository = mock(TaskRepository.class);
+        when(taskRepository.writeAll(any(), any(), any())).thenAnswer(invocation ->
+                custom.writeAll(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(taskRepository.findById(any(String.class))).thenAnswer(invocation ->
+                mongoTemplate.findById(invocation.<String>getArgument(0), Task.class));
+        taskCounterService = mock(TaskCounterService.class);
+        when(taskCounterService.created(any())).thenReturn(Mono.empty());
+        when(taskCounterService.updated(any(), any())).thenReturn(Mono.empty());
+        taskViewService = mock(TaskViewService.class);
+        when(taskViewService.saveAll(any())).thenReturn(Mono.empty());
+        taskMapper = new TaskMapperImpl();
+        ReflectionTestUtils.setField(taskMapper, "userMapper", new UserMapperImpl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void replayOfAlreadyWrittenInsertDoesNotBlockTheQueue() {
+        TaskWriteBehindQueue crashed = queue(new SimpleMeterRegistry());
+        crashed.create(task("t1")).block();
+        crashed.create(task("t2")).block();
+        // Пачка с t1 успела попасть в Mongo, но журнал не был сжат: после рестарта t1 вставляется повторно
+        mongoTemplate.insert(task("t1")).block();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TaskWriteBehindQueue recovered = queue(meterRegistry);
+        recovered.run(null);
+        recovered.flushAll().block(Duration.ofSeconds(10));
+
+        assertNull(recovered.find("t1").block());
+        assertNull(recovered.find("t2").block());
+        assertNotNull(mongoTemplate.findById("t2", Task.class).block());
+        assertEquals(1.0, meterRegistry.get("task.write_behind.failed").counter().count());
+        assertEquals(0.0, meterRegistry.get("task.write_behind.pending").gauge().value());
+        recovered.destroy();
+
+        // После сжатия журнала следующий старт ничего не повторяет
+        TaskWriteBehindQueue restarted = queue(new SimpleMeterRegistry());
+        assertNull(restarted.find("t1").block());
+        assertNull(restarted.find("t2").block());
+        restarted.destroy();
+    }
+
+    @Test
+    void compactedJournalKeepsUnwrittenChanges() {
+        TaskWriteBehindQueue queue = queue(new SimpleMeterRegistry());
+        queue.run(null);
+        queue.create(task("t1")).block();
+        queue.flush(List.of("t1")).block(Duration.ofSeconds(10));
+        queue.create(task("t2")).block();
+        Task patch = new Task();
+        patch.setStatus(TaskStatus.DONE);
+        queue.update("t1", patch, 0L).block();
+
+        // Без остановки: состояние восстанавливается только из журнала
+        TaskWriteBehindQueue recovered = queue(new SimpleMeterRegistry());
+        assertNotNull(recovered.find("t2").block());
+        assertEquals(TaskStatus.DONE, recovered.find("t1").block().getStatus());
+        assertEquals(1L, recovered.find("t1").block().getVersion());
+        recovered.destroy();
+        queue.destroy();
+    }
+
+    @Test
+    void failedFlushFailsTheCallerAndKeepsChanges() {
+        TaskWriteBehindQueue queue = queue(new SimpleMeterRegistry());
+        queue.run(null);
+        queue.create(task("t1")).block();
+        doReturn(Mono.error(new DataAccessResourceFailureException("Mongo is down")))
+                .when(taskRepository).writeAll(any(), any(), any());
+
+        // Иначе удаление после сброса не нашло бы задачу, а вставка из очереди вернула бы её позже
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> queue.flush(List.of("t1")).block(Duration.ofSeconds(10)));
+        assertThrows(DataAccessResourceFailureException.class, () -> queue.flushAll().block(Duration.ofSeconds(10)));
+        assertNotNull(queue.find("t1").block());
+        assertNull(mongoTemplate.findById("t1", Task.class).block());
+        queue.destroy();
+    }
+
+    private TaskWriteBehindQueue queue(SimpleMeterRegistry meterRegistry) {
+        TaskWriteBehindProperties properties = new TaskWriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setJournal(dataDir.resolve("task-write-behind.log"));
+        properties.setJournalSize(DataSize.ofKilobytes(256));
+        // Только явные сбросы
+        properties.setFlushInterval(Duration.ofHours(1));
+        return new TaskWriteBehindQueue(taskRepository, taskMapper, taskCounterService, taskViewService,
+                properties, meterRegistry);
+    }
+
+    private Task task(String id) {
+        Task task = new Task();
+        task.setId(id);
+        task.setName("task " + id);
+        task.setStatus(TaskStatus.TODO);
+        task.setAuthorId("u1");
+        task.setAssigneeId("u1");
+        task.setObserverIds(Set.of());
+        task.setCreatedAt(Instant.now());
+        task.setUpdatedAt(Instant.now());
+        return task;
+    }
+}
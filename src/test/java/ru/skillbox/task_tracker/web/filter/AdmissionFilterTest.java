@@ -0,0 +1,118 @@
+package ru.skillbox.task_tracker.web.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.skillbox.task_tracker.config.AdmissionProperties;
+import ru.skillbox.task_tracker.metrics.MongoLatencyMonitor;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionFilterTest {
+
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("10.0.0.7", 40000);
+
+    private AdmissionProperties properties;
+    private MongoLatencyMonitor latencyMonitor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AdmissionProperties();
+        latencyMonitor = mock(MongoLatencyMonitor.class);
+    }
+
+    @Test
+    void clientHeaderIsIgnoredFromUntrustedAddress() {
+        assertEquals("10.0.0.7", filter().clientKey(request("c1")));
+    }
+
+    @Test
+    void clientHeaderIsUsedBehindTrustedProxy() {
+        properties.setTrustedProxies(List.of("10.0.0.7"));
+
+        assertEquals("c1", filter().clientKey(request("c1")));
+        assertEquals("10.0.0.7", filter().clientKey(request(null)));
+    }
+
+    @Test
+    void clientHeaderIsUsedWhenTrustedExplicitly() {
+        properties.setTrustClientHeader(true);
+
+        assertEquals("c1", filter().clientKey(request("c1")));
+        assertEquals(128, filter().clientKey(request("x".repeat(1000))).length());
+    }
+
+    @Test
+    void rotatingClientHeaderDoesNotBypassRateLimit() {
+        properties.setClient(new AdmissionProperties.Bucket(1, 1));
+        AdmissionFilter filter = filter();
+
+        MockServerWebExchange first = MockServerWebExchange.from(request("c1"));
+        filter.filter(first, exchange -> Mono.empty()).block();
+        MockServerWebExchange second = MockServerWebExchange.from(request("c2"));
+        filter.filter(second, exchange -> Mono.empty()).block();
+
+        assertNull(first.getResponse().getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, second.getResponse().getStatusCode());
+        assertEquals("1", second.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void retryAfterIsRoundedUpToWholeSeconds() {
+        assertEquals(1, AdmissionFilter.retryAfterSeconds(0));
+        assertEquals(1, AdmissionFilter.retryAfterSeconds(1));
+        assertEquals(1, AdmissionFilter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(2, AdmissionFilter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1) + 1));
+        assertEquals(3, AdmissionFilter.retryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(2500)));
+    }
+
+    @Test
+    void sheddingGrowsLinearlyFromTargetToMaxLatency() {
+        properties.getShedding().setTargetLatency(Duration.ofMillis(50));
+        properties.getShedding().setMaxLatency(Duration.ofMillis(250));
+        AdmissionFilter filter = filter();
+
+        assertEquals(0, shedProbability(filter, 0));
+        assertEquals(0, shedProbability(filter, 50));
+        assertEquals(0.25, shedProbability(filter, 100), 1e-9);
+        assertEquals(0.5, shedProbability(filter, 150), 1e-9);
+        assertEquals(1, shedProbability(filter, 250), 1e-9);
+        assertEquals(1, shedProbability(filter, 5_000));
+
+        properties.getShedding().setEnabled(false);
+        assertEquals(0, shedProbability(filter, 5_000));
+    }
+
+    private double shedProbability(AdmissionFilter filter, long latencyMillis) {
+        when(latencyMonitor.latencyNanos()).thenReturn((double) TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        return filter.shedProbability();
+    }
+
+    private AdmissionFilter filter() {
+        return new AdmissionFilter(properties, latencyMonitor, new ObjectMapper().findAndRegisterModules(),
+                new SimpleMeterRegistry());
+    }
+
+    private static MockServerHttpRequest request(String clientId) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/v1/tasks/t1")
+                .remoteAddress(CLIENT);
+        if (clientId != null) {
+            request.header("X-Client-Id", clientId);
+        }
+        return request.build();
+    }
+}
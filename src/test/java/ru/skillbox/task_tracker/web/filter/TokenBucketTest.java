@@ -0,0 +1,63 @@
+package ru.skillbox.task_tracker.web.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void startsFullAndWaitsForNextToken() {
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        // 2 токена в секунду: следующий через полсекунды
+        assertEquals(SECOND / 2, bucket.tryAcquire(0));
+    }
+
+    @Test
+    void refillsContinuously() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+
+        assertEquals(SECOND / 4, bucket.tryAcquire(SECOND / 4));
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+        assertEquals(SECOND / 2, bucket.tryAcquire(SECOND / 2));
+    }
+
+    @Test
+    void refillIsCappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+
+        long later = TimeUnit.HOURS.toNanos(1);
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(SECOND / 10, bucket.tryAcquire(later));
+    }
+
+    @Test
+    void earlierTimestampDoesNotRefill() {
+        TokenBucket bucket = new TokenBucket(1, 1, SECOND);
+        assertEquals(0, bucket.tryAcquire(SECOND));
+
+        // nanoTime с другого ядра может оказаться чуть меньше прошлого замера
+        assertEquals(SECOND, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(2 * SECOND));
+    }
+
+    @Test
+    void burstBelowOneStillAdmitsOneRequest() {
+        TokenBucket bucket = new TokenBucket(1, 0, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND, bucket.tryAcquire(0));
+    }
+}
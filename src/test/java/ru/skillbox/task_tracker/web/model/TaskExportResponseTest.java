@@ -0,0 +1,40 @@
+package ru.skillbox.task_tracker.web.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.skillbox.task_tracker.mapper.TaskMapperImpl;
+import ru.skillbox.task_tracker.mapper.UserMapperImpl;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// null-поля пропускаются только в выгрузке, обычные ответы сохраняют прежний набор ключей
+class TaskExportResponseTest {
+
+    private final ObjectMapper json = new ObjectMapper();
+
+    @Test
+    void onlyExportOmitsNullFields() {
+        TaskResponse response = new TaskResponse();
+        response.setId("t1");
+        response.setName("task");
+        response.setObserverIds(Set.of("u2"));
+        TaskMapperImpl taskMapper = new TaskMapperImpl();
+        ReflectionTestUtils.setField(taskMapper, "userMapper", new UserMapperImpl());
+
+        JsonNode regular = json.valueToTree(response);
+        JsonNode exported = json.valueToTree(taskMapper.toExport(response));
+
+        assertTrue(regular.has("description"));
+        assertTrue(regular.get("assigneeId").isNull());
+        assertFalse(exported.has("description"));
+        assertFalse(exported.has("assigneeId"));
+        assertEquals("task", exported.get("name").asText());
+        assertEquals("u2", exported.get("observerIds").get(0).asText());
+    }
+}